@@ -0,0 +1,173 @@
+package main;
+
+import java.util.ArrayList;
+
+import main.collections.StringPool;
+
+/**
+ * Tokenizes and stems ASCII text directly from bytes.
+ * Gives the same tokens as StoryTokenizer.tokenizeString followed by StoryTokenizer.stem,
+ * but does case folding, punctuation and stop word removal in one pass over the bytes.
+ * Stemmed terms are looked up in a pool, so a String is only created for new terms.
+ * The pool is cleared when it reaches MAX_POOLED_TERMS, so a long lived thread does not keep
+ * every term it has seen; terms seen again after that are simply created once more.
+ *
+ * StoryExtractor still decodes the documents into Strings, so for stories this is a round trip:
+ * tokenize(String) copies the chars of the title or body into a byte buffer. The gain is in
+ * skipping the regular expressions and the intermediate token Strings, not the decoding.
+ * tokenize(byte[], int, int, ArrayList) can be given the ASCII bytes of a source directly.
+ * Instances are not thread safe.
+ */
+public class AsciiTokenizer {
+	// Characters which StoryTokenizer.tokenizeString replaces with spaces.
+	private static final boolean[] DELIMITERS = new boolean[128];
+	static {
+		for (char c : " \n.,'\"/-_*<>!?;:()=$%#+".toCharArray()) {
+			DELIMITERS[c] = true;
+		}
+	}
+	// Number of terms after which the term pool is cleared.
+	static final int MAX_POOLED_TERMS = 1 << 16;
+	private final StringPool stopWords = new StringPool();
+	private final StringPool terms = new StringPool(1 << 14);
+	private final PorterStemmer stemmer = new PorterStemmer();
+	// Token being built, after case folding and stop word removal.
+	private char[] token = new char[64];
+	private byte[] bytes = new byte[4096];
+
+	/**
+	 * Creates a tokenizer which removes the given stop words.
+	 * Stop words are expected to be made of lowercase letters and digits.
+	 */
+	public AsciiTokenizer(ArrayList<String> stopWords) {
+		if (stopWords != null) {
+			for (String stopWord : stopWords) {
+				this.stopWords.intern(stopWord);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if every stop word is made of lowercase ASCII letters and digits,
+	 * so that removing whole words here is the same as the regular expressions of StoryTokenizer.
+	 */
+	public static boolean supportsStopWords(ArrayList<String> stopWords) {
+		if (stopWords == null) {
+			return true;
+		}
+		for (String stopWord : stopWords) {
+			for (int i = 0; i < stopWord.length(); i++) {
+				char c = stopWord.charAt(i);
+				if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9')) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tokenizes and stems the text if it only contains ASCII characters, by copying it into
+	 * the byte buffer. Returns null if it does not, so that the caller can fall back to the String path.
+	 */
+	public ArrayList<String> tokenize(String text) {
+		if (bytes.length < text.length()) {
+			bytes = new byte[Math.max(text.length(), 2 * bytes.length)];
+		}
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= 128) {
+				return null;
+			}
+			bytes[i] = (byte) c;
+		}
+		ArrayList<String> tokens = new ArrayList<>();
+		tokenize(bytes, 0, text.length(), tokens);
+		return tokens;
+	}
+
+	/**
+	 * Tokenizes and stems the ASCII bytes in the given range and adds the terms to the list.
+	 * Returns false without adding anything if the range contains a non-ASCII byte.
+	 */
+	public boolean tokenize(byte[] buffer, int offset, int length, ArrayList<String> result) {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			if (buffer[i] < 0) {
+				return false;
+			}
+		}
+		int tokenLength = 0;
+		// Start of the current run of letters and digits in the token, or -1.
+		int wordStart = -1;
+		for (int i = offset; i <= end; i++) {
+			int c = (i < end ? buffer[i] : ' ');
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			boolean isWordChar = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+			// A word ends here. Drop it if it is a stop word.
+			if (!isWordChar && wordStart >= 0) {
+				if (stopWords.contains(token, wordStart, tokenLength - wordStart)) {
+					tokenLength = wordStart;
+				}
+				wordStart = -1;
+			}
+			if (DELIMITERS[c]) {
+				addToken(tokenLength, result);
+				tokenLength = 0;
+				continue;
+			}
+			if (isWordChar && wordStart < 0) {
+				wordStart = tokenLength;
+			}
+			if (tokenLength == token.length) {
+				char[] newToken = new char[2 * token.length];
+				System.arraycopy(token, 0, newToken, 0, tokenLength);
+				token = newToken;
+			}
+			token[tokenLength++] = (char) c;
+		}
+		return true;
+	}
+
+	/**
+	 * Stems the token in the buffer and adds the pooled term to the list,
+	 * if the token is at least 2 chars and not an integer.
+	 */
+	private void addToken(int tokenLength, ArrayList<String> result) {
+		if (tokenLength < 2 || isInteger(tokenLength)) {
+			return;
+		}
+		// Trim control characters and spaces.
+		int start = 0;
+		while (start < tokenLength && token[start] <= ' ') {
+			start++;
+		}
+		while (tokenLength > start && token[tokenLength - 1] <= ' ') {
+			tokenLength--;
+		}
+		int stemLength = stemmer.stem(token, start, tokenLength - start);
+		if (terms.size() >= MAX_POOLED_TERMS) {
+			terms.clear();
+		}
+		result.add(terms.intern(token, start, stemLength));
+	}
+
+	/**
+	 * Returns true if Integer.parseInt would accept the token.
+	 */
+	private boolean isInteger(int tokenLength) {
+		long value = 0;
+		for (int i = 0; i < tokenLength; i++) {
+			if (token[i] < '0' || token[i] > '9') {
+				return false;
+			}
+			value = 10 * value + (token[i] - '0');
+			if (value > Integer.MAX_VALUE) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
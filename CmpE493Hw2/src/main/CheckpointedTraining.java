@@ -0,0 +1,145 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Trains on the documents in order and writes a checkpoint of the training counts and the completed
+ * documents after every few documents. When the checkpoint file exists, training resumes after its
+ * documents instead of reading them again. The documents of the checkpoint must be the first documents
+ * of the input, so they are still counted in the same order and the resumed run compiles the same
+ * models as a run without interruption.
+ *
+ * The checkpoint is gzip compressed and contains a magic number, the number of completed documents,
+ * their paths and the TrainingCounts. It is written to a temporary file which then replaces the
+ * checkpoint, so a failure while writing leaves the previous checkpoint intact.
+ *
+ * Usage: java -cp out main.CheckpointedTraining directory|glob checkpointFile [--every=N] [--model=file]
+ * --model writes the mutual information model to a file which can be loaded with --shadow-model.
+ */
+public class CheckpointedTraining {
+	private static final int MAGIC = 0x434B_5031;
+	private final Path checkpointFile;
+	private final int documentsPerCheckpoint;
+	private TrainingCounts counts = new TrainingCounts();
+	private final ArrayList<String> completed = new ArrayList<>();
+
+	public CheckpointedTraining(Path checkpointFile, int documentsPerCheckpoint) {
+		this.checkpointFile = checkpointFile;
+		this.documentsPerCheckpoint = documentsPerCheckpoint;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args[0].startsWith("--") || args[1].startsWith("--")) {
+			System.out.println("Usage: CheckpointedTraining directory|glob checkpointFile [--every=N] [--model=file]");
+			return;
+		}
+		String every = Main.getOption(args, "every");
+		String modelFile = Main.getOption(args, "model");
+		StoryTokenizer.setStopWords(Main.readStopWords());
+		CheckpointedTraining training = new CheckpointedTraining(Paths.get(args[1]),
+				every == null ? 5 : Integer.parseInt(every));
+		TrainingCounts counts = training.train(Main.findDocuments(args[0]));
+		Set<String> distinctiveTerms = counts.selectDistinctiveTerms(MutualInformation.TERMS_PER_TOPIC);
+		System.out.println("Trained on " + counts.getDocumentCount() + " training stories with " + counts.getDictionary().size()
+				+ " terms, " + distinctiveTerms.size() + " distinctive terms.");
+		if (modelFile != null && !modelFile.isEmpty()) {
+			counts.compileOffHeap(distinctiveTerms, Paths.get(modelFile));
+			System.out.println("Wrote the mutual information model to " + modelFile + ".");
+		}
+	}
+
+	/**
+	 * Counts the training stories of the files which are not completed in the checkpoint, in order,
+	 * writing a checkpoint after every few files and after the last one. Returns the counts of all files.
+	 * Throws an IOException if the completed files of the checkpoint are not the first files of the input,
+	 * since the counts would then differ from a run without interruption.
+	 */
+	public TrainingCounts train(ArrayList<Path> files) throws IOException {
+		if (Files.exists(checkpointFile)) {
+			readCheckpoint();
+			checkResumable(files);
+			System.out.println("Resuming after " + completed.size() + " documents of checkpoint " + checkpointFile + ".");
+		}
+		int sinceCheckpoint = 0;
+		for (Path file : files.subList(completed.size(), files.size())) {
+			ArrayList<NewsStory> stories = StoryExtractor.getStoriesFromDocument(file.toString());
+			if (stories == null) {
+				throw new IOException("Failed to read document " + file);
+			}
+			for (NewsStory story : StoryTokenizer.tokenizeStories(stories)) {
+				counts.add(story);
+			}
+			completed.add(file.toString());
+			System.out.println("Counted document " + file + ".");
+			if (++sinceCheckpoint == documentsPerCheckpoint) {
+				writeCheckpoint();
+				sinceCheckpoint = 0;
+			}
+		}
+		if (sinceCheckpoint > 0) {
+			writeCheckpoint();
+		}
+		return counts;
+	}
+
+	/**
+	 * Checks that the completed documents of the checkpoint are the first documents of the input, in order.
+	 */
+	private void checkResumable(ArrayList<Path> files) throws IOException {
+		if (completed.size() > files.size()) {
+			throw new IOException("Checkpoint " + checkpointFile + " has " + completed.size()
+					+ " completed documents, but the input only has " + files.size());
+		}
+		for (int i = 0; i < completed.size(); i++) {
+			if (!completed.get(i).equals(files.get(i).toString())) {
+				throw new IOException("Checkpoint " + checkpointFile + " does not match the input: document " + (i + 1)
+						+ " is " + completed.get(i) + " in the checkpoint but " + files.get(i) + " in the input");
+			}
+		}
+	}
+
+	/**
+	 * Writes the counts and the completed documents to a temporary file and moves it over the checkpoint.
+	 */
+	private void writeCheckpoint() throws IOException {
+		Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(completed.size());
+			for (String file : completed) {
+				out.writeUTF(file);
+			}
+			counts.write(out);
+		}
+		Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		System.out.println("Wrote checkpoint of " + completed.size() + " documents.");
+	}
+
+	private void readCheckpoint() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(checkpointFile))))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a checkpoint file: " + checkpointFile);
+			}
+			int documents = in.readInt();
+			completed.clear();
+			for (int i = 0; i < documents; i++) {
+				completed.add(in.readUTF());
+			}
+			counts = TrainingCounts.read(in, checkpointFile.toString());
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package main;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import main.collections.ObjectIntHashMap;
+
+/**
+ * Caches the classification results of stories by a hash of their normalized title and body,
+ * so that resent stories skip tokenization, stemming and scoring.
+ * The key is made of two independent 64 bit hashes, so that a collision is practically impossible.
+ * Normalization only folds what the tokenizer treats the same: runs of spaces and new lines, and
+ * the case of ASCII letters. Misses are tokenized like StoryTokenizer.tokenizeStories, and the phrases
+ * of the --ngrams option are added, so the cached results are the ones StoryClassifier would give.
+ * The term counts of the stories are cached separately, as they do not depend on the model.
+ * Results belong to the model snapshot they were calculated with; when a newer model is published,
+ * the results are discarded while the term counts are kept.
+ * Both caches evict the least recently used entries when they are full.
+ */
+public class ClassificationCache {
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+	// Odd multiplier of the second, polynomial hash (the 64 bit golden ratio).
+	private static final long POLYNOMIAL_MULTIPLIER = 0x9E3779B97F4A7C15L;
+	private final NGramExtractor phrases;
+	private final LruMap<Key, Integer> results;
+	private final LruMap<Key, ObjectIntHashMap<String>> termCounts;
+	// Version of the model snapshot the results were calculated with. It only increases.
+	private final AtomicLong modelVersion = new AtomicLong(-1);
+	private long resultHits;
+	private long resultMisses;
+	private long termCountHits;
+	private long termCountMisses;
+	private long invalidations;
+
+	/**
+	 * Creates a cache which keeps at most the given number of results and term counts.
+	 * If a phrase extractor is given, its phrases are added to the term counts.
+	 */
+	public ClassificationCache(int capacity, NGramExtractor phrases) {
+		this.phrases = phrases;
+		results = new LruMap<>(capacity);
+		termCounts = new LruMap<>(capacity);
+	}
+
+	/**
+	 * Returns the index of the topic of the story using the live model,
+	 * from the cache if the same text was classified with this model before.
+	 */
+	public int classify(NewsStory story) {
+		ModelSnapshot snapshot = StoryClassifier.getLiveModel();
+		long version = snapshot.getVersion();
+		Key key = hash(story.title, story.body);
+		ObjectIntHashMap<String> counts;
+		synchronized (this) {
+			if (advanceModelVersion(version)) {
+				// A newer model was published, earlier results are no longer valid.
+				if (!results.isEmpty()) {
+					invalidations++;
+				}
+				results.clear();
+			}
+			// A caller holding an older snapshot than the cache neither reads nor writes results.
+			Integer topic = (modelVersion.get() == version ? results.get(key) : null);
+			if (topic != null) {
+				resultHits++;
+				return topic;
+			}
+			resultMisses++;
+			counts = termCounts.get(key);
+			if (counts != null) {
+				termCountHits++;
+			} else {
+				termCountMisses++;
+			}
+		}
+		if (counts == null) {
+			counts = countTerms(story);
+		}
+		int topic = StoryClassifier.classifyWithLiveModel(counts, snapshot.getModel());
+		synchronized (this) {
+			termCounts.put(key, counts);
+			// Only keep the result if the model did not change in the meantime.
+			if (modelVersion.get() == version) {
+				results.put(key, topic);
+			}
+		}
+		return topic;
+	}
+
+	/**
+	 * Raises the model version of the results to the given version with compare-and-set.
+	 * Returns false if the cache already has this or a newer version, so it never goes back.
+	 */
+	private boolean advanceModelVersion(long version) {
+		long current = modelVersion.get();
+		while (version > current) {
+			if (modelVersion.compareAndSet(current, version)) {
+				return true;
+			}
+			current = modelVersion.get();
+		}
+		return false;
+	}
+
+	public synchronized double getResultHitRate() {
+		return resultHits/(double)Math.max(1, resultHits + resultMisses);
+	}
+
+	public synchronized double getTermCountHitRate() {
+		return termCountHits/(double)Math.max(1, termCountHits + termCountMisses);
+	}
+
+	/**
+	 * Prints the hit rates of the caches.
+	 */
+	public synchronized void printStatistics() {
+		System.out.println("Result cache: " + resultHits + "/" + (resultHits + resultMisses) + "=" + getResultHitRate()
+				+ " hits, " + results.size() + " entries, invalidated " + invalidations + " times");
+		System.out.println("Term count cache: " + termCountHits + "/" + (termCountHits + termCountMisses) + "="
+				+ getTermCountHitRate() + " hits, " + termCounts.size() + " entries");
+	}
+
+	/**
+	 * Tokenizes and stems the title and body of the story like the stories of the documents,
+	 * adds the phrases and returns the term counts. The given story is not changed.
+	 */
+	private ObjectIntHashMap<String> countTerms(NewsStory story) {
+		NewsStory copy = new NewsStory();
+		copy.title = story.title;
+		copy.body = story.body;
+		StoryTokenizer.tokenizeStory(copy);
+		if (phrases != null) {
+			phrases.addPhrases(copy);
+		}
+		return copy.termCounts;
+	}
+
+	/**
+	 * Returns the key of the title and body: their 64 bit FNV-1a hash and a 64 bit polynomial hash
+	 * after folding the case of ASCII letters and collapsing runs of spaces and new lines,
+	 * so that only stories which tokenize the same get the same key.
+	 */
+	static Key hash(String title, String body) {
+		Key key = new Key(FNV_OFFSET_BASIS, 0);
+		hash(key, title);
+		// Separate title and body (as a zero char), so that text moving between them changes the hash.
+		key.add(0);
+		hash(key, body);
+		return key;
+	}
+
+	private static void hash(Key key, String text) {
+		// Spaces and new lines are only hashed as one space between two words,
+		// as the tokenizer splits on them and drops empty tokens.
+		boolean pendingSpace = false;
+		boolean empty = true;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == ' ' || c == '\n') {
+				pendingSpace = !empty;
+				continue;
+			}
+			if (pendingSpace) {
+				key.add(' ');
+				pendingSpace = false;
+			}
+			key.add(c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+			empty = false;
+		}
+	}
+
+	/**
+	 * Two independent 64 bit hashes of a text.
+	 */
+	static final class Key {
+		private long fnv;
+		private long polynomial;
+
+		private Key(long fnv, long polynomial) {
+			this.fnv = fnv;
+			this.polynomial = polynomial;
+		}
+
+		private void add(int c) {
+			fnv = (fnv ^ c) * FNV_PRIME;
+			polynomial = (polynomial + c + 1) * POLYNOMIAL_MULTIPLIER;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).fnv == fnv && ((Key) other).polynomial == polynomial;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (fnv ^ (fnv >>> 32));
+		}
+	}
+
+	/**
+	 * Linked hash map in access order which removes its eldest entry when it is full.
+	 */
+	private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		LruMap(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+}
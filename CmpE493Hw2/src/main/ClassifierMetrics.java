@@ -0,0 +1,150 @@
+package main;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import main.collections.LatencyHistogram;
+
+/**
+ * Metrics of the tokenizer and the classifier: latency histograms of tokenizing and scoring a story,
+ * throughput counters, and a confusion matrix for each published model version.
+ * Recording is cheap and thread safe, so the metrics are always kept.
+ * They can be exported as JSON or in the Prometheus text format.
+ */
+public class ClassifierMetrics {
+	private static final double[] PERCENTILES = { 0.5, 0.99, 0.999 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p99", "p999" };
+	private final long startTime = System.nanoTime();
+	private final LatencyHistogram tokenizationLatency = new LatencyHistogram();
+	private final LatencyHistogram scoringLatency = new LatencyHistogram();
+	private final LongAdder storiesTokenized = new LongAdder();
+	private final LongAdder tokens = new LongAdder();
+	private final LongAdder storiesClassified = new LongAdder();
+	// Counts by actual and classified topic index, for each model version.
+	private final ConcurrentSkipListMap<Long, AtomicLongArray> confusion = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Records the tokenization of a story into the given number of tokens.
+	 */
+	public void recordTokenization(long nanos, int tokenCount) {
+		tokenizationLatency.record(nanos);
+		storiesTokenized.increment();
+		tokens.add(tokenCount);
+	}
+
+	/**
+	 * Records the scoring of a story with every topic by the live model.
+	 * Comparisons with other models are not recorded, so this counts the classified stories.
+	 */
+	public void recordScoring(long nanos) {
+		scoringLatency.record(nanos);
+		storiesClassified.increment();
+	}
+
+	/**
+	 * Records the classification of a test story by the model with the given version.
+	 */
+	public void recordDecision(long modelVersion, int actualTopic, int classifiedTopic) {
+		int topicCount = Constants.topicsSet.size();
+		AtomicLongArray matrix = confusion.computeIfAbsent(modelVersion, version -> new AtomicLongArray(topicCount * topicCount));
+		matrix.incrementAndGet(actualTopic * topicCount + classifiedTopic);
+	}
+
+	public LatencyHistogram getTokenizationLatency() {
+		return tokenizationLatency;
+	}
+
+	public LatencyHistogram getScoringLatency() {
+		return scoringLatency;
+	}
+
+	/**
+	 * Returns the metrics as a JSON object. Latencies are in nanoseconds, and the throughput
+	 * is the number of classified stories per second spent scoring them.
+	 */
+	public String toJson() {
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		double scoringSeconds = scoringLatency.getSum() / 1e9;
+		StringBuilder json = new StringBuilder("{\n");
+		json.append("  \"uptime_seconds\": ").append(seconds).append(",\n");
+		json.append("  \"stories_tokenized\": ").append(storiesTokenized.sum()).append(",\n");
+		json.append("  \"tokens\": ").append(tokens.sum()).append(",\n");
+		json.append("  \"stories_classified\": ").append(storiesClassified.sum()).append(",\n");
+		json.append("  \"stories_classified_per_scoring_second\": ")
+				.append(scoringSeconds > 0 ? storiesClassified.sum() / scoringSeconds : 0).append(",\n");
+		json.append("  \"tokenization_latency_nanoseconds\": ").append(toJson(tokenizationLatency)).append(",\n");
+		json.append("  \"scoring_latency_nanoseconds\": ").append(toJson(scoringLatency)).append(",\n");
+		json.append("  \"confusion\": {");
+		String modelSeparator = "\n";
+		for (Map.Entry<Long, AtomicLongArray> entry : confusion.entrySet()) {
+			json.append(modelSeparator).append("    \"").append(entry.getKey()).append("\": {");
+			String actualSeparator = "\n";
+			for (int actual = 0; actual < Constants.topicsSet.size(); actual++) {
+				json.append(actualSeparator).append("      \"").append(Constants.topicsSet.get(actual)).append("\": {");
+				for (int classified = 0; classified < Constants.topicsSet.size(); classified++) {
+					json.append(classified > 0 ? ", " : "").append('"').append(Constants.topicsSet.get(classified))
+							.append("\": ").append(entry.getValue().get(actual * Constants.topicsSet.size() + classified));
+				}
+				json.append("}");
+				actualSeparator = ",\n";
+			}
+			json.append("\n    }");
+			modelSeparator = ",\n";
+		}
+		json.append(confusion.isEmpty() ? "}\n" : "\n  }\n").append("}");
+		return json.toString();
+	}
+
+	/**
+	 * Returns the metrics in the Prometheus text exposition format. Latencies are in seconds.
+	 */
+	public String toPrometheus() {
+		StringBuilder text = new StringBuilder();
+		counter(text, "classifier_stories_tokenized_total", "Stories tokenized.", storiesTokenized.sum());
+		counter(text, "classifier_tokens_total", "Tokens produced by the tokenizer.", tokens.sum());
+		counter(text, "classifier_stories_classified_total", "Stories classified with the live model.", storiesClassified.sum());
+		summary(text, "classifier_tokenization_latency_seconds", "Time to tokenize and stem a story.", tokenizationLatency);
+		summary(text, "classifier_scoring_latency_seconds", "Time for the live model to score a story with every topic.", scoringLatency);
+		text.append("# HELP classifier_decisions_total Test stories by model version, actual and classified topic.\n");
+		text.append("# TYPE classifier_decisions_total counter\n");
+		for (Map.Entry<Long, AtomicLongArray> entry : confusion.entrySet()) {
+			for (int actual = 0; actual < Constants.topicsSet.size(); actual++) {
+				for (int classified = 0; classified < Constants.topicsSet.size(); classified++) {
+					text.append("classifier_decisions_total{model_version=\"").append(entry.getKey())
+							.append("\",actual=\"").append(Constants.topicsSet.get(actual))
+							.append("\",classified=\"").append(Constants.topicsSet.get(classified)).append("\"} ")
+							.append(entry.getValue().get(actual * Constants.topicsSet.size() + classified)).append('\n');
+				}
+			}
+		}
+		return text.toString();
+	}
+
+	private static String toJson(LatencyHistogram histogram) {
+		StringBuilder json = new StringBuilder("{\"count\": ").append(histogram.getCount())
+				.append(", \"mean\": ").append(histogram.getMean()).append(", \"max\": ").append(histogram.getMax());
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			json.append(", \"").append(PERCENTILE_NAMES[i]).append("\": ").append(histogram.getPercentile(PERCENTILES[i]));
+		}
+		return json.append("}").toString();
+	}
+
+	private static void counter(StringBuilder text, String name, String help, long value) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(" counter\n");
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void summary(StringBuilder text, String name, String help, LatencyHistogram histogram) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(" summary\n");
+		for (double percentile : PERCENTILES) {
+			text.append(name).append("{quantile=\"").append(percentile).append("\"} ")
+					.append(histogram.getPercentile(percentile) / 1e9).append('\n');
+		}
+		text.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+		text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+	}
+}
@@ -0,0 +1,70 @@
+package main;
+
+import java.util.HashMap;
+
+import main.collections.ObjectIntHashMap;
+
+/**
+ * Full precision model which keeps the term probabilities of each topic
+ * in a double array indexed by term id. The arrays are never changed after construction.
+ */
+public class DenseTopicModel implements TopicModel {
+	final ObjectIntHashMap<String> termIDs;
+	final double[] topicProbabilities;
+	final double[][] termProbabilities;
+
+	DenseTopicModel(ObjectIntHashMap<String> termIDs, double[] topicProbabilities, double[][] termProbabilities) {
+		this.termIDs = termIDs;
+		this.topicProbabilities = topicProbabilities;
+		this.termProbabilities = termProbabilities;
+	}
+
+	/**
+	 * Compiles the topic and term probability maps into a dense model.
+	 * Every topic map is expected to contain the same dictionary.
+	 */
+	public static DenseTopicModel fromProbabilities(HashMap<String, Double> topicProbs,
+			HashMap<String, HashMap<String, Double>> termProbs) {
+		// Assign ids using the dictionary of the first topic.
+		HashMap<String, Double> dictionary = termProbs.get(Constants.topicsSet.get(0));
+		ObjectIntHashMap<String> termIDs = new ObjectIntHashMap<>(dictionary.size());
+		for (String term : dictionary.keySet()) {
+			termIDs.put(term, termIDs.size());
+		}
+		double[] topicProbabilities = new double[Constants.topicsSet.size()];
+		double[][] termProbabilities = new double[Constants.topicsSet.size()][termIDs.size()];
+		for (int i = 0; i < Constants.topicsSet.size(); i++) {
+			String topic = Constants.topicsSet.get(i);
+			topicProbabilities[i] = topicProbs.get(topic);
+			for (int slot = termIDs.nextSlot(-1); slot >= 0; slot = termIDs.nextSlot(slot)) {
+				termProbabilities[i][termIDs.valueAt(slot)] = termProbs.get(topic).get(termIDs.keyAt(slot));
+			}
+		}
+		return new DenseTopicModel(termIDs, topicProbabilities, termProbabilities);
+	}
+
+	@Override
+	public int getTermID(String term) {
+		return termIDs.getOrDefault(term, -1);
+	}
+
+	@Override
+	public double getTopicProbability(int topic) {
+		return topicProbabilities[topic];
+	}
+
+	@Override
+	public double getTermProbability(int topic, int termID) {
+		return termProbabilities[topic][termID];
+	}
+
+	@Override
+	public long getWeightBytes() {
+		return 8L * termProbabilities.length * termIDs.size();
+	}
+
+	@Override
+	public Object getTermIndex() {
+		return termIDs;
+	}
+}
@@ -0,0 +1,257 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import main.collections.IntIntHashMap;
+import main.collections.ObjectIntHashMap;
+
+/**
+ * Evaluates the mutual information feature selection for many numbers of terms per topic (K)
+ * without retraining for each of them. The full mutual information ranking and the term counts
+ * are calculated once. Features are then added to the model in ranking order, and the
+ * score parts of each test story are updated only for the added terms.
+ *
+ * With the selected terms S, the score of a story for a topic is
+ * log P(topic) + sum over t in S of n_t * log(c_t + 1) - (sum over t in S of n_t) * log(total_topic(S) + |S|),
+ * so each story keeps the two sums per topic, and adding a term only touches the stories containing it.
+ *
+ * The accuracy comes from these sums. The scoring time is measured separately by building a
+ * DenseTopicModel of the selected terms for each K and classifying the test stories with
+ * StoryClassifier.classify, so it shows how the latency of the real classifier changes with K.
+ */
+public class FeatureSweep {
+	private final ArrayList<String> dictionary;
+	// Term counts of each topic by term id.
+	private final int[][] counts;
+	private final double[] topicProbabilities;
+	// Term ids of each topic in decreasing order of mutual information.
+	private final int[][] rankings;
+	// Topic index and term counts of each test story.
+	private final int[] testTopics;
+	private final ArrayList<ObjectIntHashMap<String>> testTermCounts = new ArrayList<>();
+	// Test stories containing each term, and the number of times they contain it.
+	private final int[][] postingStories;
+	private final int[][] postingCounts;
+
+	/**
+	 * Ranks the terms of the dictionary and indexes the test stories.
+	 * The topic probabilities are taken from the given model.
+	 */
+	public FeatureSweep(ArrayList<ArrayList<NewsStory>> documents, ArrayList<String> dictionary,
+			HashMap<String, ObjectIntHashMap<String>> termCounts, TopicModel model) {
+		this.dictionary = dictionary;
+		int topicCount = Constants.topicsSet.size();
+		ObjectIntHashMap<String> termIDs = new ObjectIntHashMap<>(dictionary.size());
+		for (int i = 0; i < dictionary.size(); i++) {
+			termIDs.put(dictionary.get(i), i);
+		}
+		counts = new int[topicCount][dictionary.size()];
+		topicProbabilities = new double[topicCount];
+		for (int topic = 0; topic < topicCount; topic++) {
+			topicProbabilities[topic] = model.getTopicProbability(topic);
+			ObjectIntHashMap<String> termCountsOfTopic = termCounts.get(Constants.topicsSet.get(topic));
+			for (int term = 0; term < dictionary.size(); term++) {
+				counts[topic][term] = termCountsOfTopic.get(dictionary.get(term));
+			}
+		}
+		rankings = rank(documents, termIDs);
+		// Index the test stories by term.
+		ArrayList<Integer> topics = new ArrayList<>();
+		ArrayList<IntIntHashMap> postings = new ArrayList<>();
+		int[] postingSizes = new int[dictionary.size()];
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				// Only consider test documents.
+				if (!story.lewissplit.equals("TEST")) {
+					continue;
+				}
+				IntIntHashMap storyCounts = new IntIntHashMap(story.termCounts.size());
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					int term = termIDs.getOrDefault(story.termCounts.keyAt(slot), -1);
+					if (term >= 0) {
+						storyCounts.put(term, story.termCounts.valueAt(slot));
+						postingSizes[term]++;
+					}
+				}
+				topics.add(Constants.topicsSet.indexOf(story.topic));
+				postings.add(storyCounts);
+				testTermCounts.add(story.termCounts);
+			}
+		}
+		testTopics = new int[topics.size()];
+		postingStories = new int[dictionary.size()][];
+		postingCounts = new int[dictionary.size()][];
+		for (int term = 0; term < dictionary.size(); term++) {
+			postingStories[term] = new int[postingSizes[term]];
+			postingCounts[term] = new int[postingSizes[term]];
+			postingSizes[term] = 0;
+		}
+		for (int story = 0; story < topics.size(); story++) {
+			testTopics[story] = topics.get(story);
+			IntIntHashMap storyCounts = postings.get(story);
+			for (int slot = storyCounts.nextSlot(-1); slot >= 0; slot = storyCounts.nextSlot(slot)) {
+				int term = storyCounts.keyAt(slot);
+				postingStories[term][postingSizes[term]] = story;
+				postingCounts[term][postingSizes[term]++] = storyCounts.valueAt(slot);
+			}
+		}
+	}
+
+	/**
+	 * Evaluates each number of terms per topic in increasing order and prints a table of
+	 * the number of features, accuracy, time to add the features and the time per story
+	 * of classifying the test stories with a model of the selected terms.
+	 */
+	public void run(int[] termsPerTopic) {
+		int[] ks = termsPerTopic.clone();
+		Arrays.sort(ks);
+		int topicCount = topicProbabilities.length;
+		int storyCount = testTopics.length;
+		boolean[] selected = new boolean[dictionary.size()];
+		int featureCount = 0;
+		long[] topicTotals = new long[topicCount];
+		// Sums of n_t * log(c_t + 1) and of n_t for each test story.
+		double[][] weightedSums = new double[storyCount][topicCount];
+		int[] selectedCounts = new int[storyCount];
+		int k = 0;
+		System.out.println();
+		System.out.println("K\tfeatures\taccuracy\tadd ms\tscore us/story");
+		for (int nextK : ks) {
+			long start = System.nanoTime();
+			// Add the terms ranked between the previous and this K for every topic.
+			for (; k < Math.min(nextK, dictionary.size()); k++) {
+				for (int topic = 0; topic < topicCount; topic++) {
+					int term = rankings[topic][k];
+					if (selected[term]) {
+						continue;
+					}
+					selected[term] = true;
+					featureCount++;
+					for (int t = 0; t < topicCount; t++) {
+						topicTotals[t] += counts[t][term];
+					}
+					for (int i = 0; i < postingStories[term].length; i++) {
+						int story = postingStories[term][i];
+						int count = postingCounts[term][i];
+						selectedCounts[story] += count;
+						for (int t = 0; t < topicCount; t++) {
+							weightedSums[story][t] += count * Math.log(counts[t][term] + 1);
+						}
+					}
+				}
+			}
+			long added = System.nanoTime();
+			// Score the test stories with the current features.
+			double[] logDenominators = new double[topicCount];
+			for (int topic = 0; topic < topicCount; topic++) {
+				logDenominators[topic] = Math.log(topicTotals[topic] + featureCount);
+			}
+			int correct = 0;
+			for (int story = 0; story < storyCount; story++) {
+				int best = 0;
+				double bestScore = Double.NEGATIVE_INFINITY;
+				for (int topic = 0; topic < topicCount; topic++) {
+					double score = topicProbabilities[topic] + weightedSums[story][topic]
+							- selectedCounts[story] * logDenominators[topic];
+					if (score > bestScore) {
+						bestScore = score;
+						best = topic;
+					}
+				}
+				if (best == testTopics[story]) {
+					correct++;
+				}
+			}
+			double scoreMicros = timeClassification(buildModel(selected, featureCount, topicTotals, logDenominators));
+			System.out.println(nextK + "\t" + featureCount + "\t" + correct/(double)storyCount
+					+ "\t" + (added - start)/1000000.0 + "\t" + scoreMicros);
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Returns a dense model of the selected terms, with the add-one smoothed probabilities of the sweep.
+	 */
+	private DenseTopicModel buildModel(boolean[] selected, int featureCount, long[] topicTotals,
+			double[] logDenominators) {
+		int topicCount = topicProbabilities.length;
+		ObjectIntHashMap<String> termIDs = new ObjectIntHashMap<>(featureCount);
+		double[][] termProbabilities = new double[topicCount][featureCount];
+		for (int term = 0; term < selected.length; term++) {
+			if (!selected[term]) {
+				continue;
+			}
+			int id = termIDs.size();
+			termIDs.put(dictionary.get(term), id);
+			for (int topic = 0; topic < topicCount; topic++) {
+				termProbabilities[topic][id] = Math.log(counts[topic][term] + 1) - logDenominators[topic];
+			}
+		}
+		return new DenseTopicModel(termIDs, topicProbabilities.clone(), termProbabilities);
+	}
+
+	/**
+	 * Classifies the test stories with the model once to warm up, then again,
+	 * and returns the time per story of the second pass in microseconds.
+	 */
+	private double timeClassification(TopicModel model) {
+		for (ObjectIntHashMap<String> termCounts : testTermCounts) {
+			StoryClassifier.classify(termCounts, model);
+		}
+		long start = System.nanoTime();
+		for (ObjectIntHashMap<String> termCounts : testTermCounts) {
+			StoryClassifier.classify(termCounts, model);
+		}
+		return (System.nanoTime() - start)/1000.0/Math.max(1, testTermCounts.size());
+	}
+
+	/**
+	 * Returns the term ids of each topic sorted by decreasing mutual information,
+	 * using the document frequencies of the training stories.
+	 */
+	private int[][] rank(ArrayList<ArrayList<NewsStory>> documents, ObjectIntHashMap<String> termIDs) {
+		int topicCount = topicProbabilities.length;
+		int[][] documentFrequencies = new int[topicCount][dictionary.size()];
+		int[] documentCounts = new int[topicCount];
+		int totalDocCount = 0;
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				// Only use training documents.
+				if (!story.lewissplit.equals("TRAIN")) {
+					continue;
+				}
+				int topic = Constants.topicsSet.indexOf(story.topic);
+				documentCounts[topic]++;
+				totalDocCount++;
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					documentFrequencies[topic][termIDs.get(story.termCounts.keyAt(slot))]++;
+				}
+			}
+		}
+		int[][] result = new int[topicCount][];
+		for (int topic = 0; topic < topicCount; topic++) {
+			double[] mutualInfos = new double[dictionary.size()];
+			Integer[] order = new Integer[dictionary.size()];
+			for (int term = 0; term < dictionary.size(); term++) {
+				int yTermYTopic = (documentFrequencies[topic][term] > 0 ? documentFrequencies[topic][term] : 1);
+				int yTermNTopic = 1;
+				for (int otherTopic = 0; otherTopic < topicCount; otherTopic++) {
+					if (otherTopic != topic) {
+						yTermNTopic += documentFrequencies[otherTopic][term];
+					}
+				}
+				mutualInfos[term] = MutualInformation.rankValue(
+						MutualInformation.calculate(yTermYTopic, yTermNTopic, documentCounts[topic], totalDocCount));
+				order[term] = term;
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(mutualInfos[b], mutualInfos[a]));
+			result[topic] = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				result[topic][i] = order[i];
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,190 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daemon which watches a feed directory for .sgm files and keeps the live model up to date.
+ * Only the complete REUTERS records which were not read before are parsed, so files may be added
+ * or appended to at any time. The training stories are added to the training counts, and the model
+ * is recompiled with a new mutual information selection once no file has changed for the debounce
+ * delay, then published to StoryClassifier. The test stories of the feed are used to report
+ * the accuracy of every published model.
+ *
+ * Usage: java -cp out main.FeedWatcher directory [--debounce=milliseconds]
+ */
+public class FeedWatcher {
+	private static final byte[] RECORD_END = "</REUTERS>".getBytes(StandardCharsets.US_ASCII);
+	private final Path directory;
+	private final long debounceNanos;
+	private final TrainingCounts counts = new TrainingCounts();
+	private final ArrayList<NewsStory> testStories = new ArrayList<>();
+	// Number of bytes read from each file, which is always the end of a complete record.
+	private final HashMap<Path, Long> offsets = new HashMap<>();
+	// Files which became shorter than their offset, and are not read anymore.
+	private final HashSet<Path> ignoredFiles = new HashSet<>();
+
+	public FeedWatcher(Path directory, long debounceMillis) {
+		this.directory = directory;
+		this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1 || args[0].startsWith("--")) {
+			System.out.println("Usage: FeedWatcher directory [--debounce=milliseconds]");
+			return;
+		}
+		String debounce = Main.getOption(args, "debounce");
+		StoryTokenizer.setStopWords(Main.readStopWords());
+		new FeedWatcher(Paths.get(args[0]), debounce == null ? 2000 : Long.parseLong(debounce)).run();
+	}
+
+	/**
+	 * Reads the files which are already in the directory, publishes a model,
+	 * then watches the directory until the thread is interrupted.
+	 */
+	public void run() throws IOException, InterruptedException {
+		try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+			// Register before the first scan, so no change between them is missed.
+			directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			for (Path file : Main.findDocuments(directory.toString())) {
+				readNewRecords(file);
+			}
+			recompile();
+			System.out.println("Watching " + directory + "...");
+			// Time of the recompilation after the last change, or -1 if nothing changed.
+			long deadline = -1;
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchKey key = (deadline < 0 ? watchService.take()
+						: watchService.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+				if (key == null) {
+					recompile();
+					deadline = -1;
+					continue;
+				}
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						// Events were lost, so check every file.
+						for (Path file : Main.findDocuments(directory.toString())) {
+							if (readNewRecords(file) > 0) {
+								deadline = System.nanoTime() + debounceNanos;
+							}
+						}
+						continue;
+					}
+					Path file = directory.resolve((Path) event.context());
+					if (file.toString().endsWith(".sgm") && readNewRecords(file) > 0) {
+						deadline = System.nanoTime() + debounceNanos;
+					}
+				}
+				key.reset();
+			}
+		}
+	}
+
+	/**
+	 * Parses the complete records of the file after its offset and adds their stories.
+	 * Returns the number of added stories.
+	 */
+	int readNewRecords(Path file) throws IOException {
+		if (file.toString().endsWith(".gz")) {
+			// Compressed files cannot be read from an offset.
+			System.out.println("Skipping compressed document " + file);
+			return 0;
+		}
+		if (ignoredFiles.contains(file)) {
+			return 0;
+		}
+		long offset = offsets.getOrDefault(file, 0L);
+		byte[] bytes;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < offset) {
+				System.out.println("Document " + file + " became shorter, ignoring it from now on.");
+				ignoredFiles.add(file);
+				return 0;
+			}
+			if (channel.size() == offset) {
+				return 0;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, channel.size() - offset));
+			int read = 0;
+			while (buffer.hasRemaining() && read >= 0) {
+				read = channel.read(buffer, offset + buffer.position());
+			}
+			bytes = buffer.array();
+		}
+		// Only read up to the end of the last complete record; the rest is read when it is complete.
+		int end = lastRecordEnd(bytes);
+		if (end < 0) {
+			return 0;
+		}
+		offsets.put(file, offset + end);
+		ArrayList<NewsStory> stories = StoryExtractor.getStoriesFromText(new String(bytes, 0, end, Charset.defaultCharset()));
+		if (stories == null) {
+			return 0;
+		}
+		int trainingStories = 0;
+		for (NewsStory story : StoryTokenizer.tokenizeStories(stories)) {
+			if (counts.add(story)) {
+				trainingStories++;
+			} else {
+				testStories.add(story);
+			}
+		}
+		System.out.println("Read " + stories.size() + " stories (" + trainingStories + " for training) from " + file + ".");
+		return stories.size();
+	}
+
+	/**
+	 * Selects the distinctive terms, compiles a model of them and publishes it.
+	 */
+	void recompile() {
+		if (counts.getDocumentCount() == 0) {
+			return;
+		}
+		long start = System.nanoTime();
+		Set<String> distinctiveTerms = counts.selectDistinctiveTerms(MutualInformation.TERMS_PER_TOPIC);
+		DenseTopicModel model = counts.compile(distinctiveTerms);
+		ModelSnapshot snapshot = StoryClassifier.publishModel(model);
+		System.out.println("Published model version " + snapshot.getVersion() + " of " + distinctiveTerms.size()
+				+ " terms from " + counts.getDocumentCount() + " training stories in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+		if (!testStories.isEmpty()) {
+			ArrayList<ArrayList<NewsStory>> documents = new ArrayList<>();
+			documents.add(testStories);
+			StoryClassifier.classifyTestDocuments(documents, snapshot, true);
+		}
+	}
+
+	/**
+	 * Returns the position after the last "</REUTERS>" in the bytes, or -1 if there is none.
+	 */
+	private static int lastRecordEnd(byte[] bytes) {
+		for (int i = bytes.length - RECORD_END.length; i >= 0; i--) {
+			int j = 0;
+			while (j < RECORD_END.length && bytes[i + j] == RECORD_END[j]) {
+				j++;
+			}
+			if (j == RECORD_END.length) {
+				return i + RECORD_END.length;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,50 @@
+package main;
+
+/**
+ * Fixed size feature space which terms are hashed into (the hashing trick).
+ * Memory used by models on this space only depends on the number of bits,
+ * not on the size of the vocabulary.
+ */
+public class HashedFeatureSpace {
+	private final int bits;
+	private final int mask;
+
+	/**
+	 * Creates a space of 2^bits buckets.
+	 */
+	public HashedFeatureSpace(int bits) {
+		if (bits < 1 || bits > 30) {
+			throw new IllegalArgumentException("Number of bits must be between 1 and 30: " + bits);
+		}
+		this.bits = bits;
+		this.mask = (1 << bits) - 1;
+	}
+
+	public int getBits() {
+		return bits;
+	}
+
+	public int getBucketCount() {
+		return mask + 1;
+	}
+
+	/**
+	 * Returns the bucket of the term.
+	 */
+	public int bucket(String term) {
+		return hash(term) & mask;
+	}
+
+	/**
+	 * Spreads the bits of the hash code of the term (MurmurHash3 finalizer).
+	 */
+	private static int hash(String term) {
+		int h = term.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
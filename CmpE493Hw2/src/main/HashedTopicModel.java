@@ -0,0 +1,166 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import main.collections.IntDoubleHashMap;
+
+/**
+ * Model whose term ids are the buckets of a hashed feature space.
+ * Only buckets which occur in the training stories (and are selected, if a selection is given)
+ * are in the dictionary of the model; terms falling into other buckets are ignored like unknown terms.
+ */
+public class HashedTopicModel implements TopicModel {
+	private final HashedFeatureSpace space;
+	private final double[] topicProbabilities;
+	private final double[][] termProbabilities;
+	private final BitSet features;
+
+	private HashedTopicModel(HashedFeatureSpace space, double[] topicProbabilities, double[][] termProbabilities,
+			BitSet features) {
+		this.space = space;
+		this.topicProbabilities = topicProbabilities;
+		this.termProbabilities = termProbabilities;
+		this.features = features;
+	}
+
+	/**
+	 * Counts the hashed terms of the training stories and calculates the probabilities
+	 * of the buckets for each topic with add-one smoothing.
+	 * If selected buckets are given, all other buckets are discarded.
+	 */
+	public static HashedTopicModel train(ArrayList<ArrayList<NewsStory>> documents, HashedFeatureSpace space,
+			BitSet selected) {
+		int topicCount = Constants.topicsSet.size();
+		int[][] counts = new int[topicCount][space.getBucketCount()];
+		int[] documentCounts = new int[topicCount];
+		BitSet features = new BitSet(space.getBucketCount());
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				// Only use training documents.
+				if (!story.lewissplit.equals("TRAIN")) {
+					continue;
+				}
+				int topic = Constants.topicsSet.indexOf(story.topic);
+				documentCounts[topic]++;
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					int bucket = space.bucket(story.termCounts.keyAt(slot));
+					if (selected == null || selected.get(bucket)) {
+						counts[topic][bucket] += story.termCounts.valueAt(slot);
+						features.set(bucket);
+					}
+				}
+			}
+		}
+		int totalDocCount = 0;
+		for (int count : documentCounts) {
+			totalDocCount += count;
+		}
+		double[] topicProbabilities = new double[topicCount];
+		double[][] termProbabilities = new double[topicCount][space.getBucketCount()];
+		for (int topic = 0; topic < topicCount; topic++) {
+			topicProbabilities[topic] = Math.log(documentCounts[topic]/(double)totalDocCount);
+			// Denominator: total count of the buckets in this topic + number of buckets in the dictionary.
+			long denominator = features.cardinality();
+			for (int bucket = features.nextSetBit(0); bucket >= 0; bucket = features.nextSetBit(bucket + 1)) {
+				denominator += counts[topic][bucket];
+			}
+			for (int bucket = features.nextSetBit(0); bucket >= 0; bucket = features.nextSetBit(bucket + 1)) {
+				int numerator = counts[topic][bucket] + 1;
+				termProbabilities[topic][bucket] = Math.log(numerator/(double)denominator);
+			}
+		}
+		return new HashedTopicModel(space, topicProbabilities, termProbabilities, features);
+	}
+
+	/**
+	 * Selects the 50 buckets with the highest mutual information for each topic,
+	 * counting the training stories which contain a term of each bucket.
+	 */
+	public static BitSet selectFeatures(ArrayList<ArrayList<NewsStory>> documents, HashedFeatureSpace space) {
+		int topicCount = Constants.topicsSet.size();
+		int[][] documentFrequencies = new int[topicCount][space.getBucketCount()];
+		int[] documentCounts = new int[topicCount];
+		// Index of the last story counted for each bucket, so that a story is counted once per bucket.
+		int[] lastStory = new int[space.getBucketCount()];
+		int storyIndex = 0;
+		BitSet occupied = new BitSet(space.getBucketCount());
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				// Only use training documents.
+				if (!story.lewissplit.equals("TRAIN")) {
+					continue;
+				}
+				storyIndex++;
+				int topic = Constants.topicsSet.indexOf(story.topic);
+				documentCounts[topic]++;
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					int bucket = space.bucket(story.termCounts.keyAt(slot));
+					if (lastStory[bucket] != storyIndex) {
+						lastStory[bucket] = storyIndex;
+						documentFrequencies[topic][bucket]++;
+						occupied.set(bucket);
+					}
+				}
+			}
+		}
+		int totalDocCount = storyIndex;
+		BitSet selected = new BitSet(space.getBucketCount());
+		for (int topic = 0; topic < topicCount; topic++) {
+			IntDoubleHashMap mutualInfos = new IntDoubleHashMap();
+			for (int bucket = occupied.nextSetBit(0); bucket >= 0; bucket = occupied.nextSetBit(bucket + 1)) {
+				int yTermYTopic = (documentFrequencies[topic][bucket] > 0 ? documentFrequencies[topic][bucket] : 1);
+				int yTermNTopic = 1;
+				for (int otherTopic = 0; otherTopic < topicCount; otherTopic++) {
+					if (otherTopic != topic) {
+						yTermNTopic += documentFrequencies[otherTopic][bucket];
+					}
+				}
+				double mutualInformation = MutualInformation.calculate(yTermYTopic, yTermNTopic,
+						documentCounts[topic], totalDocCount);
+				MutualInformation.keepHighest(mutualInfos, bucket, mutualInformation, MutualInformation.TERMS_PER_TOPIC);
+			}
+			for (int slot = mutualInfos.nextSlot(-1); slot >= 0; slot = mutualInfos.nextSlot(slot)) {
+				selected.set(mutualInfos.keyAt(slot));
+			}
+		}
+		return selected;
+	}
+
+	public HashedFeatureSpace getSpace() {
+		return space;
+	}
+
+	/**
+	 * Returns the number of buckets in the dictionary of the model.
+	 */
+	public int getFeatureCount() {
+		return features.cardinality();
+	}
+
+	@Override
+	public int getTermID(String term) {
+		int bucket = space.bucket(term);
+		return features.get(bucket) ? bucket : -1;
+	}
+
+	@Override
+	public double getTopicProbability(int topic) {
+		return topicProbabilities[topic];
+	}
+
+	@Override
+	public double getTermProbability(int topic, int termID) {
+		return termProbabilities[topic][termID];
+	}
+
+	@Override
+	public long getWeightBytes() {
+		return 8L * topicProbabilities.length * space.getBucketCount();
+	}
+
+	@Override
+	public Object getTermIndex() {
+		return this;
+	}
+}
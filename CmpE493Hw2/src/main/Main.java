@@ -2,53 +2,396 @@ package main;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import main.collections.IntDoubleHashMap;
+import main.collections.IntIntHashMap;
+import main.collections.ObjectIntHashMap;
 
 public class Main {
+	// Cache of the --cache option, kept across classifications to show its invalidation.
+	private static ClassificationCache cache;
+	// Phrases of the --ngrams option, which are also added to the stories classified through the cache.
+	private static NGramExtractor phraseExtractor;
 
 	public static void main(String[] args) {
 		// Read stories from documents.
-		ArrayList<ArrayList<NewsStory>>  documents = readStoriesFromDocuments();
+		String input = getOption(args, "input");
+		ArrayList<ArrayList<NewsStory>>  documents = readStoriesFromDocuments(input == null ? "Dataset" : input);
+		boolean memoryReport = getOption(args, "memory-report") != null;
+		if (memoryReport) {
+			new MemoryReport("reading documents", documents).addDocuments("", documents).print();
+		}
 		// Read the stop words.
 		StoryTokenizer.setStopWords(readStopWords());
 		// Tokenize the stories.
 		documents = tokenizeStories(documents);
+		// Remove near-duplicate training stories if requested.
+		removeDuplicates(args, documents);
+		// Add frequent phrases as terms if requested.
+		addPhrases(args, documents);
+		if (memoryReport) {
+			new MemoryReport("tokenizing documents", documents).addDocuments("", documents).print();
+		}
+		// Count and classify on hashed buckets only, without an exact dictionary, if requested.
+		String hashBits = getOption(args, "hash-bits");
+		if (hashBits != null) {
+			runHashed(args, documents, new HashedFeatureSpace(Integer.parseInt(hashBits)));
+			return;
+		}
 		// Create dictionary.
 		System.out.println("Creating dictionary...");
 		ArrayList<String> dictionary = createDictionary(documents);
 		System.out.println("Creating dictionary DONE.");
 		// Calculate topic probabilities.
-		StoryClassifier.setTopicProbabilities(calculateTopicProbabilities(documents));
+		HashMap<String, Double> topicProbabilities = calculateTopicProbabilities(documents);
 		// Count terms for each topic.
-		HashMap<String, HashMap<String, Integer>> termCounts = countTermsPerTopic(dictionary, documents);
+		HashMap<String, ObjectIntHashMap<String>> termCounts = countTermsPerTopic(dictionary, documents);
 		// Calculate probabilities of each term for each topic.
 		System.out.println("Calculating probabilities of terms...");
-		StoryClassifier.setTermProbabilities(calculateTermProbabilities(termCounts, dictionary));
+		HashMap<String, HashMap<String, Double>> termProbabilities = calculateTermProbabilities(termCounts, dictionary);
+		DenseTopicModel model = DenseTopicModel.fromProbabilities(topicProbabilities, termProbabilities);
+		ModelSnapshot snapshot = StoryClassifier.publishModel(model);
 		System.out.println("Calculating probabilities of terms DONE.");
-		// Try to classify test stories.
-		System.out.println("Classifying test documents...");
-		StoryClassifier.classifyTestDocuments(documents);
-		// Calculate mutual information.
-		HashMap<String, HashMap<String, Double>> mutualInfos = calculateMutualInformation(documents, dictionary);
-		// Merge the distinctive words to create new vocabulary.
-		Set<String> distinctiveTerms = new HashSet<>();
-		for (String topic : Constants.topicsSet) {
-			distinctiveTerms.addAll(mutualInfos.get(topic).keySet());
+		if (memoryReport) {
+			new MemoryReport("calculating probabilities", documents).addDocuments("", documents)
+					.addDictionary("dictionary", dictionary).addTopicTermCounts("topic term counts", termCounts)
+					.addProbabilities("probability maps", termProbabilities).addModel("model", model).print();
 		}
+		termProbabilities = null;
+		// Compare with a saved model if requested.
+		loadShadowModel(args);
+		// Try to classify test stories, unless all models are evaluated in one pass at the end.
+		boolean singlePass = getOption(args, "single-pass") != null;
+		if (!singlePass) {
+			System.out.println("Classifying test documents...");
+			StoryClassifier.classifyTestDocuments(documents);
+		}
+		// Compare with the quantized and off-heap models if requested.
+		compareQuantizedModel(args, documents, model);
+		compareOffHeapModel(args, documents, model, termCounts, dictionary);
+		classifyWithCache(args, documents);
+		// Evaluate many feature counts if requested.
+		sweepFeatureCounts(args, documents, dictionary, termCounts, model);
+		// Calculate mutual information and merge the distinctive words to create new vocabulary.
+		Set<String> distinctiveTerms = selectDistinctiveTerms(args, documents, dictionary);
 		// Discard all other words.
 		ArrayList<ArrayList<NewsStory>> updatedDocuments = updateDocumentsWithWords(documents, distinctiveTerms);
 		// Update the dictionary.
 		ArrayList<String> updatedDictionary = createDictionary(updatedDocuments);
 		// Recount the terms.
-		HashMap<String, HashMap<String, Integer>> updatedTermCounts = countTermsPerTopic(updatedDictionary, updatedDocuments);
+		HashMap<String, ObjectIntHashMap<String>> updatedTermCounts = countTermsPerTopic(updatedDictionary, updatedDocuments);
 		// Recalculate the probabilities
-		StoryClassifier.setTermProbabilities(calculateTermProbabilities(updatedTermCounts, updatedDictionary));
+		HashMap<String, HashMap<String, Double>> updatedTermProbabilities = calculateTermProbabilities(updatedTermCounts,
+				updatedDictionary);
+		DenseTopicModel updatedModel = DenseTopicModel.fromProbabilities(topicProbabilities, updatedTermProbabilities);
+		ModelSnapshot updatedSnapshot = StoryClassifier.publishModel(updatedModel);
+		if (memoryReport) {
+			new MemoryReport("mutual information", documents).addDocuments("", documents)
+					.addDictionary("dictionary", dictionary).addTopicTermCounts("topic term counts", termCounts)
+					.addModel("model", model).addDocuments("updated ", updatedDocuments)
+					.addTopicTermCounts("updated topic term counts", updatedTermCounts)
+					.addProbabilities("updated probability maps", updatedTermProbabilities)
+					.addModel("updated model", updatedModel).print();
+		}
+		updatedTermProbabilities = null;
 		// Classify with the updated probabilities.
-		System.out.println("Classifying test documents with mutual information...");
-		StoryClassifier.classifyTestDocuments(updatedDocuments);	
+		if (singlePass) {
+			evaluateInOnePass(documents, snapshot, updatedSnapshot);
+		} else {
+			System.out.println("Classifying test documents with mutual information...");
+			StoryClassifier.classifyTestDocuments(updatedDocuments);
+		}
+		// Compare with the quantized and off-heap models if requested.
+		compareQuantizedModel(args, updatedDocuments, updatedModel);
+		compareOffHeapModel(args, updatedDocuments, updatedModel, updatedTermCounts, updatedDictionary);
+		classifyWithCache(args, documents);
+		printMetrics(args);
+	}
+
+	/**
+	 * If the --metrics[=json|prometheus] option is given, prints the metrics of the tokenizer
+	 * and the classifier in the given format (default json).
+	 */
+	private static void printMetrics(String[] args) {
+		String format = getOption(args, "metrics");
+		if (format == null) {
+			return;
+		}
+		ClassifierMetrics metrics = StoryClassifier.getMetrics();
+		System.out.println(format.equals("prometheus") ? metrics.toPrometheus() : metrics.toJson());
+	}
+
+	/**
+	 * Classifies the test documents with the full model, the mutual information model and
+	 * the shadow model if there is one, walking the stories once, and prints them side by side.
+	 * The stories keep all their terms, which the mutual information model does not know and skips.
+	 * The models are given as the snapshots they were published with, so the decisions of the full model
+	 * are recorded under its version although it is no longer live.
+	 */
+	private static void evaluateInOnePass(ArrayList<ArrayList<NewsStory>> documents, ModelSnapshot snapshot,
+			ModelSnapshot mutualInformationSnapshot) {
+		System.out.println("Classifying test documents with all models...");
+		ModelEvaluator evaluator = new ModelEvaluator().add("full", snapshot).add("mutual information", mutualInformationSnapshot);
+		ModelSnapshot shadow = StoryClassifier.getShadowModel();
+		if (shadow != null) {
+			evaluator.add("shadow version " + shadow.getVersion(), shadow);
+		}
+		evaluator.evaluate(documents);
+	}
+
+	/**
+	 * If the --quantize=float|int16|int8 option is given, quantizes the
+	 * probabilities of the model and compares the quantized model with the full precision one.
+	 */
+	private static void compareQuantizedModel(String[] args, ArrayList<ArrayList<NewsStory>> documents,
+			DenseTopicModel model) {
+		String precision = getOption(args, "quantize");
+		if (precision == null) {
+			return;
+		}
+		QuantizedTopicModel quantizedModel = new QuantizedTopicModel(model,
+				QuantizedTopicModel.Precision.valueOf(precision.toUpperCase()));
+		System.out.println("Comparing with " + quantizedModel.getPrecision() + " quantized model...");
+		StoryClassifier.compareModels(documents, model, quantizedModel);
+	}
+
+	/**
+	 * If the --off-heap[=file] option is given, copies the term counts into an off-heap matrix,
+	 * compiles an off-heap model from it and compares it with the given model.
+	 * If a file is given, the model is written to and mapped from that file.
+	 */
+	private static void compareOffHeapModel(String[] args, ArrayList<ArrayList<NewsStory>> documents,
+			TopicModel model, HashMap<String, ObjectIntHashMap<String>> termCounts, ArrayList<String> dictionary) {
+		String file = getOption(args, "off-heap");
+		if (file == null) {
+			return;
+		}
+		double[] topicProbabilities = new double[Constants.topicsSet.size()];
+		for (int i = 0; i < topicProbabilities.length; i++) {
+			topicProbabilities[i] = model.getTopicProbability(i);
+		}
+		OffHeapTopicModel offHeapModel;
+		try {
+			offHeapModel = OffHeapTopicModel.compile(OffHeapCountMatrix.fromTermCounts(termCounts, dictionary),
+					topicProbabilities, dictionary, file.isEmpty() ? null : Paths.get(file));
+		} catch (IOException e) {
+			System.out.println("Error while writing the model file " + file);
+			e.printStackTrace();
+			return;
+		}
+		System.out.println("Comparing with off-heap model...");
+		System.out.println("Front coded vocabulary: " + offHeapModel.getVocabulary().size() + " terms in "
+				+ offHeapModel.getVocabulary().getByteSize() + " bytes");
+		StoryClassifier.compareModels(documents, model, offHeapModel);
+	}
+
+	/**
+	 * Runs the pipeline of the --hash-bits=N option on a hashed feature space instead of the dictionary.
+	 * No dictionary, per topic term maps or term mutual information are built: the terms of the stories
+	 * are counted into the buckets, the buckets are selected by their mutual information, and the stories
+	 * are classified by the buckets of their terms. The memory of the models only depends on the number of bits.
+	 */
+	private static void runHashed(String[] args, ArrayList<ArrayList<NewsStory>> documents, HashedFeatureSpace space) {
+		System.out.println("Counting terms in " + space.getBucketCount() + " hashed buckets...");
+		HashedTopicModel model = HashedTopicModel.train(documents, space, null);
+		ModelSnapshot snapshot = StoryClassifier.publishModel(model);
+		System.out.println("Counting terms in " + space.getBucketCount() + " hashed buckets DONE, "
+				+ model.getFeatureCount() + " buckets used.");
+		loadShadowModel(args);
+		boolean singlePass = getOption(args, "single-pass") != null;
+		if (!singlePass) {
+			System.out.println("Classifying test documents...");
+			StoryClassifier.classifyTestDocuments(documents);
+		}
+		classifyWithCache(args, documents);
+		System.out.println("Selecting buckets with mutual information...");
+		HashedTopicModel updatedModel = HashedTopicModel.train(documents, space,
+				HashedTopicModel.selectFeatures(documents, space));
+		ModelSnapshot updatedSnapshot = StoryClassifier.publishModel(updatedModel);
+		System.out.println("Selecting buckets with mutual information DONE, " + updatedModel.getFeatureCount()
+				+ " buckets selected.");
+		if (singlePass) {
+			evaluateInOnePass(documents, snapshot, updatedSnapshot);
+		} else {
+			System.out.println("Classifying test documents with mutual information...");
+			StoryClassifier.classifyTestDocuments(documents);
+		}
+		classifyWithCache(args, documents);
+		printMetrics(args);
+	}
+
+	/**
+	 * If the --sweep[=k1,k2,...] option is given, evaluates the mutual information selection
+	 * with each number of terms per topic, reusing one ranking and one set of term counts.
+	 */
+	private static void sweepFeatureCounts(String[] args, ArrayList<ArrayList<NewsStory>> documents,
+			ArrayList<String> dictionary, HashMap<String, ObjectIntHashMap<String>> termCounts, TopicModel model) {
+		String sweepOption = getOption(args, "sweep");
+		if (sweepOption == null) {
+			return;
+		}
+		String[] values = (sweepOption.isEmpty() ? "10,20,50,100,200,500,1000,2000,5000" : sweepOption).split(",");
+		int[] termsPerTopic = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			termsPerTopic[i] = Integer.parseInt(values[i].trim());
+		}
+		System.out.println("Sweeping the number of terms per topic...");
+		new FeatureSweep(documents, dictionary, termCounts, model).run(termsPerTopic);
+	}
+
+	/**
+	 * If the --cache[=capacity] option is given, classifies the test stories twice from their raw text
+	 * through the classification cache, as if every story was sent again, and prints the hit rates.
+	 */
+	private static void classifyWithCache(String[] args, ArrayList<ArrayList<NewsStory>> documents) {
+		String capacity = getOption(args, "cache");
+		if (capacity == null) {
+			return;
+		}
+		if (cache == null) {
+			cache = new ClassificationCache(capacity.isEmpty() ? 10000 : Integer.parseInt(capacity), phraseExtractor);
+		}
+		System.out.println("Classifying test documents through the cache...");
+		for (int round = 1; round <= 2; round++) {
+			int correct = 0;
+			int total = 0;
+			long start = System.nanoTime();
+			for (ArrayList<NewsStory> doc : documents) {
+				for (NewsStory story : doc) {
+					// Only consider test documents.
+					if (!story.lewissplit.equals("TEST")) {
+						continue;
+					}
+					if (story.topic.equals(Constants.topicsSet.get(cache.classify(story)))) {
+						correct++;
+					}
+					total++;
+				}
+			}
+			System.out.println("Round " + round + ": " + correct + "/" + total + "=" + correct/(double)total
+					+ " in " + (System.nanoTime() - start)/1000000 + " ms");
+		}
+		cache.printStatistics();
+		System.out.println();
+	}
+
+	/**
+	 * If the --shadow-model=file option is given, maps the model file written by --off-heap
+	 * and publishes it as the shadow model, which every classification is compared with.
+	 */
+	private static void loadShadowModel(String[] args) {
+		String file = getOption(args, "shadow-model");
+		if (file == null) {
+			return;
+		}
+		try {
+			StoryClassifier.publishShadowModel(OffHeapTopicModel.load(Paths.get(file)));
+		} catch (IOException e) {
+			System.out.println("Error while reading the model file " + file);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the value of an option given as --name=value, or null if it is not given.
+	 * An option given as --name only has the empty string as its value.
+	 */
+	static String getOption(String[] args, String name) {
+		for (String arg : args) {
+			if (arg.equals("--" + name)) {
+				return "";
+			}
+			if (arg.startsWith("--" + name + "=")) {
+				return arg.substring(name.length() + 3);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * If the --dedup[=threshold] option is given, removes the training stories whose estimated
+	 * Jaccard similarity with an earlier training story is at least the threshold (default 0.9).
+	 */
+	private static void removeDuplicates(String[] args, ArrayList<ArrayList<NewsStory>> documents) {
+		String threshold = getOption(args, "dedup");
+		if (threshold == null) {
+			return;
+		}
+		System.out.println("Removing duplicate stories...");
+		StoryDeduplicator deduplicator = new StoryDeduplicator(threshold.isEmpty() ? 0.9 : Double.parseDouble(threshold));
+		int removed = deduplicator.removeDuplicates(documents);
+		System.out.println("Removing duplicate stories DONE. Removed " + removed + " training stories.");
+	}
+
+	/**
+	 * If the --ngrams[=length,support,capacity] option is given, counts the phrases of up to
+	 * length tokens in the training stories and adds the ones occurring at least support times
+	 * as terms to every story. At most capacity phrases are counted at a time.
+	 */
+	private static void addPhrases(String[] args, ArrayList<ArrayList<NewsStory>> documents) {
+		String ngramOption = getOption(args, "ngrams");
+		if (ngramOption == null) {
+			return;
+		}
+		String[] params = (ngramOption + ",,").split(",", -1);
+		NGramExtractor extractor = new NGramExtractor(
+				params[0].isEmpty() ? 2 : Integer.parseInt(params[0]),
+				params[1].isEmpty() ? 20 : Integer.parseInt(params[1]),
+				params[2].isEmpty() ? 100000 : Integer.parseInt(params[2]));
+		System.out.println("Counting phrases...");
+		extractor.count(documents);
+		extractor.addPhrases(documents);
+		System.out.println("Counting phrases DONE. Added " + extractor.getPhrases().size() + " phrases.");
+		phraseExtractor = extractor;
+	}
+
+	/**
+	 * Returns the union of the most distinctive words of each topic.
+	 * If the --sketch-mi[=epsilon,delta,candidates] option is given, the mutual information is estimated
+	 * from sketches filled in one pass over the training stories, instead of exact document frequencies.
+	 */
+	private static Set<String> selectDistinctiveTerms(String[] args, ArrayList<ArrayList<NewsStory>> documents,
+			ArrayList<String> dictionary) {
+		String sketchOption = getOption(args, "sketch-mi");
+		if (sketchOption != null) {
+			String[] params = (sketchOption + ",,").split(",", -1);
+			SketchedMutualInformation sketches = new SketchedMutualInformation(
+					params[0].isEmpty() ? 0.0005 : Double.parseDouble(params[0]),
+					params[1].isEmpty() ? 0.01 : Double.parseDouble(params[1]),
+					params[2].isEmpty() ? 5000 : Integer.parseInt(params[2]));
+			System.out.println("Calculating approximate mutual information...");
+			for (ArrayList<NewsStory> doc : documents) {
+				for (NewsStory story : doc) {
+					sketches.add(story);
+				}
+			}
+			Set<String> distinctiveTerms = sketches.selectTerms();
+			System.out.println("Calculating approximate mutual information DONE. Sketches use "
+					+ sketches.getMemoryBytes() + " bytes.");
+			return distinctiveTerms;
+		}
+		HashMap<String, IntDoubleHashMap> mutualInfos = calculateMutualInformation(documents, dictionary);
+		Set<String> distinctiveTerms = new HashSet<>();
+		for (String topic : Constants.topicsSet) {
+			IntDoubleHashMap topicInfos = mutualInfos.get(topic);
+			for (int slot = topicInfos.nextSlot(-1); slot >= 0; slot = topicInfos.nextSlot(slot)) {
+				distinctiveTerms.add(dictionary.get(topicInfos.keyAt(slot)));
+			}
+		}
+		return distinctiveTerms;
 	}
 
 	/**
@@ -69,22 +412,18 @@ public class Main {
 				for (String token : story.titleTokens) {
 					if (distinctiveTerms.contains(token)) {
 						updatedStory.titleTokens.add(token);
-						if (	updatedStory.termCounts.containsKey(token)) {
-							updatedStory.termCounts.put(token, updatedStory.termCounts.get(token) + 1);
-						} else {
-							updatedStory.termCounts.put(token, 1);
-						}
 					}
 				}
 				// Update body
 				for (String token : story.bodyTokens) {
 					if (distinctiveTerms.contains(token)) {
 						updatedStory.bodyTokens.add(token);
-						if (	updatedStory.termCounts.containsKey(token)) {
-							updatedStory.termCounts.put(token, updatedStory.termCounts.get(token) + 1);
-						} else {
-							updatedStory.termCounts.put(token, 1);
-						}
+					}
+				}
+				// Update counts, which also contain the phrases.
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					if (distinctiveTerms.contains(story.termCounts.keyAt(slot))) {
+						updatedStory.termCounts.put(story.termCounts.keyAt(slot), story.termCounts.valueAt(slot));
 					}
 				}
 				updatedDoc.add(updatedStory);
@@ -96,14 +435,20 @@ public class Main {
 
 	/**
 	 * Calculates the most distinctive 50 words of each topic.
+	 * Returns their mutual information values keyed by their index in the dictionary.
 	 */
-	private static HashMap<String, HashMap<String, Double>> calculateMutualInformation(ArrayList<ArrayList<NewsStory>> documents,
+	private static HashMap<String, IntDoubleHashMap> calculateMutualInformation(ArrayList<ArrayList<NewsStory>> documents,
 			ArrayList<String> dictionary) {
+		// Index the dictionary.
+		ObjectIntHashMap<String> termIDs = new ObjectIntHashMap<>(dictionary.size());
+		for (int i = 0; i < dictionary.size(); i++) {
+			termIDs.put(dictionary.get(i), i);
+		}
 		// Initialize the arrays.
-		HashMap<String, HashMap<String, Integer>> termCounts = new HashMap<>();
-		HashMap<String, Integer> documentCounts = new HashMap<>();
+		HashMap<String, IntIntHashMap> termCounts = new HashMap<>();
+		ObjectIntHashMap<String> documentCounts = new ObjectIntHashMap<>();
 		for (String topic : Constants.topicsSet) {
-			termCounts.put(topic, new HashMap<String, Integer>());
+			termCounts.put(topic, new IntIntHashMap());
 			documentCounts.put(topic, 0);
 		}
 		// Fill in the arrays.
@@ -114,17 +459,13 @@ public class Main {
 					continue;
 				}
 				// Get the topic.
-				String currentTopic = story.topic; 
+				IntIntHashMap currentTermCounts = termCounts.get(story.topic);
 				// Update counts for this topic with this story's terms.
-				for (String term: story.termCounts.keySet()) {
-					if (termCounts.get(currentTopic).containsKey(term)) {
-						termCounts.get(currentTopic).put(term, termCounts.get(currentTopic).get(term) + 1);
-					} else {
-						termCounts.get(currentTopic).put(term, 1);	
-					}
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					currentTermCounts.increment(termIDs.get(story.termCounts.keyAt(slot)));
 				}
 				// Update total document number for topic
-				documentCounts.put(currentTopic, documentCounts.get(currentTopic) + 1);
+				documentCounts.increment(story.topic);
 			}
 		}
 		// Calculate total document count.
@@ -133,55 +474,24 @@ public class Main {
 			totalDocCount += documentCounts.get(topic);
 		}
 		// Calculate mutual information for each term, using the values found above.
-		HashMap<String, HashMap<String, Double>> allMutualInfos = new HashMap<>();
+		HashMap<String, IntDoubleHashMap> allMutualInfos = new HashMap<>();
 		System.out.println("Calculating mutual information...");
 		for (String topic : Constants.topicsSet) {
-			HashMap<String, Double> mutualInfos = new HashMap<>();
-			for (String term : dictionary) {
+			IntDoubleHashMap mutualInfos = new IntDoubleHashMap();
+			for (int term = 0; term < dictionary.size(); term++) {
 				// The stories containing this term and are from this topic.
-				int yTermYTopic = (termCounts.get(topic).containsKey(term) ? termCounts.get(topic).get(term) : 1);
+				int yTermYTopic = termCounts.get(topic).getOrDefault(term, 1);
 				// The stories containing this term and are not from this topic.
 				int yTermNTopic = 1;
 				for (String _topic : Constants.topicsSet) {
-					if (!_topic.equals(topic) && termCounts.get(_topic).containsKey(term)) {
+					if (!_topic.equals(topic)) {
 						yTermNTopic += termCounts.get(_topic).get(term);
 					}
 				}		
-				// The stories not containing this term and are from this topic.
-				int nTermYTopic = documentCounts.get(topic) - yTermYTopic;
-				// The stories not containing this term and are not from this topic.
-				int nTermNTopic = totalDocCount - documentCounts.get(topic) - yTermNTopic;
-				
-				// Prepare the parts of the sum
-				double part1 = (yTermYTopic/(double)totalDocCount) 
-						* Math.log((yTermYTopic*totalDocCount) / (double)((yTermYTopic + yTermNTopic)*(yTermYTopic + nTermYTopic)));
-				double part2 = (nTermYTopic/(double)totalDocCount) 
-						* Math.log((nTermYTopic*totalDocCount) / (double)((nTermYTopic + nTermNTopic)*(yTermYTopic + nTermYTopic)));
-				double part3 = (yTermNTopic/(double)totalDocCount) 
-						* Math.log((yTermNTopic*totalDocCount) / (double)((yTermYTopic + yTermNTopic)*(yTermNTopic + nTermNTopic)));
-				double part4 = (nTermNTopic/(double)totalDocCount) 
-						* Math.log((nTermNTopic*totalDocCount) / (double)((nTermYTopic + nTermNTopic)*(yTermNTopic + nTermNTopic)));
-						
-				// Calculate mutual information of the term.
-				double mutualInformation = part1 + part2 + part3 + part4;
-				
-				// Only keep 50 words with the highest mutual information values.
-				if (mutualInfos.size() < 50) {
-					mutualInfos.put(term, mutualInformation);
-				} else {
-					String minKey = (String) mutualInfos.keySet().toArray()[0];
-					double minVal = mutualInfos.get(minKey);
-					for (String key : mutualInfos.keySet()) {
-						if (minVal > mutualInfos.get(key)) {
-							minVal = mutualInfos.get(key);
-							minKey = key;
-						}	
-					}
-					if (minVal < mutualInformation) {
-						mutualInfos.remove(minKey);
-						mutualInfos.put(term, mutualInformation);
-					}
-				}
+				// Only keep the words with the highest mutual information values.
+				double mutualInformation = MutualInformation.calculate(yTermYTopic, yTermNTopic,
+						documentCounts.get(topic), totalDocCount);
+				MutualInformation.keepHighest(mutualInfos, term, mutualInformation, MutualInformation.TERMS_PER_TOPIC);
 			}
 			allMutualInfos.put(topic, mutualInfos);
 		}
@@ -193,7 +503,7 @@ public class Main {
 	 * Returns a map containing the term probabilities for each topic.
 	 */
 	private static HashMap<String, HashMap<String, Double>> calculateTermProbabilities(
-			HashMap<String, HashMap<String, Integer>> termCounts, ArrayList<String> dictionary) {
+			HashMap<String, ObjectIntHashMap<String>> termCounts, ArrayList<String> dictionary) {
 		HashMap<String, HashMap<String, Double>> result = new HashMap<>();
 		for (String topic : Constants.topicsSet) {
 			result.put(topic, calculateTermProbabilitiesForTopic(termCounts.get(topic), dictionary));	
@@ -204,17 +514,17 @@ public class Main {
 	/**
 	 * Returns a map containing the term probabilities for a specified topic.
 	 */
-	private static HashMap<String, Double> calculateTermProbabilitiesForTopic(HashMap<String, Integer> termCountsOfTopic, ArrayList<String> dictionary) {
+	private static HashMap<String, Double> calculateTermProbabilitiesForTopic(ObjectIntHashMap<String> termCountsOfTopic, ArrayList<String> dictionary) {
 		HashMap<String, Double> probs = new HashMap<>();
+		// Denominator: total number of terms in this topic + dictionary size.
+		int denominator = 0;
+		for (int slot = termCountsOfTopic.nextSlot(-1); slot >= 0; slot = termCountsOfTopic.nextSlot(slot)) {
+			denominator += termCountsOfTopic.valueAt(slot);
+		}
+		denominator += dictionary.size();
 		for (String term : dictionary) {
 			// Numerator: number of times this term occurs in this topic + 1.
-			int numerator = (termCountsOfTopic.containsKey(term) ? termCountsOfTopic.get(term) : 0) + 1;
-			// Denominator: total number of terms in this topic + dictionary size.
-			int denominator = 0;
-			for (int count : termCountsOfTopic.values()) {
-				denominator += count;
-			}
-			denominator += dictionary.size();
+			int numerator = termCountsOfTopic.get(term) + 1;
 			probs.put(term, Math.log(numerator/(double)denominator));
 		}
 		return probs;
@@ -223,9 +533,9 @@ public class Main {
 	/**
 	 * Returns a map containing the counts of terms for each topic.
 	 */
-	private static HashMap<String, HashMap<String, Integer>> countTermsPerTopic(ArrayList<String> dictionary,
+	private static HashMap<String, ObjectIntHashMap<String>> countTermsPerTopic(ArrayList<String> dictionary,
 			ArrayList<ArrayList<NewsStory>> documents) {
-		HashMap<String, HashMap<String, Integer>> result = new HashMap<>();
+		HashMap<String, ObjectIntHashMap<String>> result = new HashMap<>();
 		for (String topic : Constants.topicsSet) {
 			result.put(topic, countTermsForTopic(topic, dictionary, documents));	
 		}
@@ -235,9 +545,9 @@ public class Main {
 	/**
 	 * Returns a map containing the counts of terms for the specified topic.
 	 */
-	private static HashMap<String, Integer> countTermsForTopic(String topic, ArrayList<String> dictionary,
+	private static ObjectIntHashMap<String> countTermsForTopic(String topic, ArrayList<String> dictionary,
 			ArrayList<ArrayList<NewsStory>> documents) {
-		HashMap<String, Integer> result = new HashMap<>();
+		ObjectIntHashMap<String> result = new ObjectIntHashMap<>();
 		for (ArrayList<NewsStory> doc : documents) {
 			for (NewsStory story : doc) {
 				// Only consider TRAIN documents from this topic.
@@ -245,12 +555,9 @@ public class Main {
 					continue;
 				}
 				// Add this story to the count.
-				for (String term : story.termCounts.keySet()) {
-					if (result.containsKey(term)) {
-						result.put(term, result.get(term) + story.termCounts.get(term));
-					} else {
-						result.put(term, story.termCounts.get(term));
-					}
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					int count = story.termCounts.valueAt(slot);
+					result.adjustOrPut(story.termCounts.keyAt(slot), count, count);
 				}
 			}
 		}
@@ -261,7 +568,7 @@ public class Main {
 	 * Returns a map of the topic and the number of stories that contain that topic.
 	 */
 	private static HashMap<String, Double> calculateTopicProbabilities(ArrayList<ArrayList<NewsStory>> documents) {
-		HashMap<String, Integer> topicCounts = new HashMap<>();
+		ObjectIntHashMap<String> topicCounts = new ObjectIntHashMap<>();
 		int storyCount = 0;
 		// Initialize the counts map.
 		for (String topic : Constants.topicsSet) {
@@ -278,14 +585,14 @@ public class Main {
 					
 					for (String topic : Constants.topicsSet) {
 						if (story.topic.equals(topic)) {
-							topicCounts.put(topic, topicCounts.get(topic) + 1);	
+							topicCounts.increment(topic);
 						}
 					}
 				}
 		}
 		// Calculate probabilities
 		HashMap<String, Double> topicProbabilities = new HashMap<>();
-		for (String topic : topicCounts.keySet()) {
+		for (String topic : Constants.topicsSet) {
 			topicProbabilities.put(topic, Math.log(topicCounts.get(topic)/(double)storyCount));
 		}
 		return topicProbabilities;
@@ -296,14 +603,17 @@ public class Main {
 	 */
 	private static ArrayList<String> createDictionary(ArrayList<ArrayList<NewsStory>> documents) {
 		ArrayList<String> dictionary = new ArrayList<>();
+		// Index of the dictionary to check the words in one lookup.
+		ObjectIntHashMap<String> termIDs = new ObjectIntHashMap<>();
 		for (int i = 0; i < documents.size(); i++) {
 			for (NewsStory story : documents.get(i)) {
 				// Only consider files for training.
 				if (!story.lewissplit.equals("TRAIN")) {
 					continue;
 				}
-				for (String word : story.termCounts.keySet()) {
-					if (!dictionary.contains(word)) {
+				for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+					String word = story.termCounts.keyAt(slot);
+					if (termIDs.adjustOrPut(word, 0, dictionary.size()) == dictionary.size()) {
 						dictionary.add(word);
 					}
 				}
@@ -313,21 +623,72 @@ public class Main {
 	}
 
 	/**
-	 * Reads files from "Dataset/reut2-000.sgm" until "Dataset/reut2-021.sgm".
+	 * Reads the .sgm and .sgm.gz files in the given directory, or the files matching the given glob
+	 * such as "Dataset/reut2-*.sgm.gz", in the order of their names.
+	 * Several files are decompressed and parsed at the same time.
 	 * Extracts stories with their title and bodies.
 	 * Returns the news story arrays of every document in an array.
+	 * Throws an IllegalStateException naming the file if a document cannot be read.
 	 */
-	private static ArrayList<ArrayList<NewsStory>> readStoriesFromDocuments() {
+	static ArrayList<ArrayList<NewsStory>> readStoriesFromDocuments(String input) {
 		ArrayList<ArrayList<NewsStory>> documents = new ArrayList<>();
 		System.out.println("Reading documents...");
+		ArrayList<Path> files;
+		try {
+			files = findDocuments(input);
+		} catch (IOException e) {
+			System.out.println("Error while listing the documents in " + input);
+			e.printStackTrace();
+			return documents;
+		}
 		// Read documents;
-		for (int i = 0; i < 22; i++) {
-			String fileName = "Dataset/reut2-0" + (i<10 ? "0" : "") + i + ".sgm";
-			documents.add(StoryExtractor.getStoriesFromDocument(fileName));
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors())));
+		try {
+			ArrayList<Future<ArrayList<NewsStory>>> results = new ArrayList<>();
+			for (Path file : files) {
+				results.add(executor.submit(() -> StoryExtractor.getStoriesFromDocument(file.toString())));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				ArrayList<NewsStory> stories = results.get(i).get();
+				if (stories == null) {
+					throw new IllegalStateException("Failed to read document " + files.get(i));
+				}
+				documents.add(stories);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			System.out.println("Error while reading the documents in " + input);
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
 		}
 		System.out.println("Reading documents DONE.");
 		return documents;
 	}
+
+	/**
+	 * Returns the documents of the input, sorted by name.
+	 * The input is either a directory, whose .sgm and .sgm.gz files are returned,
+	 * or a glob pattern for the file names in a directory.
+	 */
+	static ArrayList<Path> findDocuments(String input) throws IOException {
+		Path directory = Paths.get(input);
+		String pattern = "*.{sgm,sgm.gz}";
+		if (!Files.isDirectory(directory)) {
+			// Split the glob into its directory and file name pattern.
+			Path parent = directory.getParent();
+			pattern = directory.getFileName().toString();
+			directory = (parent == null ? Paths.get(".") : parent);
+		}
+		ArrayList<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, pattern)) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		Collections.sort(files);
+		return files;
+	}
 	
 	/**
 	 * Prints the pretext, prints a space, prints the progress as text like xx/yy,
@@ -348,7 +709,7 @@ public class Main {
 	/**
 	 * Reads stop words from the location in Constants.
 	 */
-	private static ArrayList<String> readStopWords() {
+	static ArrayList<String> readStopWords() {
 		ArrayList<String> stopwords = new ArrayList<>();
 		try (BufferedReader br = new BufferedReader(new FileReader(Constants.stopWordsLocation))) {
 			String line;
@@ -371,7 +732,7 @@ public class Main {
 		System.out.println("Tokenizing documents...");
 		// Tokenize documents;
 		for (int i = 0; i < documents.size(); i++) {
-			printProgress("Tokenizing document", i+1, 22);
+			printProgress("Tokenizing document", i+1, documents.size());
 			tokenizedDocuments.add(StoryTokenizer.tokenizeStories(documents.get(i)));
 		}
 		System.out.println("Tokenizing documents DONE.");
@@ -0,0 +1,222 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import main.collections.ObjectIntHashMap;
+
+/**
+ * Estimates the heap space retained by the structures of the pipeline, for a 64-bit JVM with
+ * compressed references: 12 byte object headers, 16 byte array headers, 4 byte references and
+ * sizes rounded up to 8 bytes. Objects shared by several structures, like the token strings,
+ * are only counted for the first structure which is added to the report.
+ */
+public class MemoryReport {
+	// Strings keep Latin-1 text in one byte per character since Java 9.
+	private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version").startsWith("1.");
+	private final String stage;
+	private final int storyCount;
+	private int termCount;
+	private final Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	private final ArrayList<String> names = new ArrayList<>();
+	private final ArrayList<Long> sizes = new ArrayList<>();
+
+	/**
+	 * Creates a report of the given stage, which gives the sizes per story of the documents.
+	 */
+	public MemoryReport(String stage, ArrayList<ArrayList<NewsStory>> documents) {
+		this.stage = stage;
+		int stories = 0;
+		for (ArrayList<NewsStory> doc : documents) {
+			stories += doc.size();
+		}
+		this.storyCount = stories;
+	}
+
+	/**
+	 * Adds the story objects, the raw texts, the token lists and the term count maps of the documents.
+	 * The prefix is added to their names.
+	 */
+	public MemoryReport addDocuments(String prefix, ArrayList<ArrayList<NewsStory>> documents) {
+		long stories = arrayList(documents);
+		long text = 0;
+		long tokens = 0;
+		long termCounts = 0;
+		for (ArrayList<NewsStory> doc : documents) {
+			stories += arrayList(doc);
+			for (NewsStory story : doc) {
+				if (counted.add(story)) {
+					// Header, storyID and eight references.
+					stories += align(12 + 4 + 8 * 4);
+				}
+				text += string(story.title) + string(story.body) + string(story.lewissplit) + string(story.topic)
+						+ stringList(story.text);
+				tokens += stringList(story.titleTokens) + stringList(story.bodyTokens);
+				termCounts += objectIntMap(story.termCounts);
+			}
+		}
+		add(prefix + "stories", stories);
+		add(prefix + "raw text", text);
+		add(prefix + "token lists", tokens);
+		add(prefix + "story term counts", termCounts);
+		return this;
+	}
+
+	/**
+	 * Adds a dictionary, whose size also gives the sizes per term.
+	 */
+	public MemoryReport addDictionary(String name, ArrayList<String> dictionary) {
+		termCount = dictionary.size();
+		add(name, stringList(dictionary));
+		return this;
+	}
+
+	/**
+	 * Adds the term counts of each topic.
+	 */
+	public MemoryReport addTopicTermCounts(String name, HashMap<String, ObjectIntHashMap<String>> termCounts) {
+		long size = hashMap(termCounts);
+		for (Map.Entry<String, ObjectIntHashMap<String>> entry : termCounts.entrySet()) {
+			size += string(entry.getKey()) + objectIntMap(entry.getValue());
+		}
+		add(name, size);
+		return this;
+	}
+
+	/**
+	 * Adds the term probability maps of each topic.
+	 */
+	public MemoryReport addProbabilities(String name, HashMap<String, HashMap<String, Double>> probabilities) {
+		long size = hashMap(probabilities);
+		for (Map.Entry<String, HashMap<String, Double>> entry : probabilities.entrySet()) {
+			size += string(entry.getKey()) + hashMap(entry.getValue());
+			for (Map.Entry<String, Double> probability : entry.getValue().entrySet()) {
+				size += string(probability.getKey()) + (counted.add(probability.getValue()) ? align(12 + 8) : 0);
+			}
+		}
+		add(name, size);
+		return this;
+	}
+
+	/**
+	 * Adds a dense model with its term ids and probability arrays.
+	 */
+	public MemoryReport addModel(String name, DenseTopicModel model) {
+		long size = align(12 + 3 * 4) + objectIntMap(model.termIDs) + align(16 + 8 * model.topicProbabilities.length)
+				+ align(16 + 4 * model.termProbabilities.length);
+		for (double[] probabilities : model.termProbabilities) {
+			size += align(16 + 8L * probabilities.length);
+		}
+		add(name, size);
+		return this;
+	}
+
+	/**
+	 * Prints the sizes of the structures in the order they were added, with the used heap after a garbage collection.
+	 */
+	public void print() {
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		System.out.println(String.format("Memory after %s: %.1f MB of heap used, %d stories, %d terms",
+				stage, (runtime.totalMemory() - runtime.freeMemory()) / 1048576.0, storyCount, termCount));
+		long total = 0;
+		for (int i = 0; i < names.size(); i++) {
+			System.out.println(format(names.get(i), sizes.get(i)));
+			total += sizes.get(i);
+		}
+		System.out.println(format("total", total));
+	}
+
+	private String format(String name, long size) {
+		String line = String.format("  %-28s %12d bytes", name + ":", size);
+		if (storyCount > 0) {
+			line += String.format(", %10.1f per story", size / (double) storyCount);
+		}
+		if (termCount > 0) {
+			line += String.format(", %10.1f per term", size / (double) termCount);
+		}
+		return line;
+	}
+
+	private void add(String name, long size) {
+		names.add(name);
+		sizes.add(size);
+	}
+
+	private long string(String string) {
+		if (string == null || !counted.add(string)) {
+			return 0;
+		}
+		boolean latin1 = COMPACT_STRINGS;
+		for (int i = 0; latin1 && i < string.length(); i++) {
+			latin1 = string.charAt(i) < 256;
+		}
+		// Header, value reference, hash and coder, then the value array.
+		return align(12 + 4 + 4 + 2) + align(16 + (latin1 ? 1L : 2L) * string.length());
+	}
+
+	private long stringList(ArrayList<String> strings) {
+		long size = arrayList(strings);
+		for (String string : strings) {
+			size += string(string);
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the size of the list and its element array, whose capacity is estimated
+	 * from the growth of a list filled with add.
+	 */
+	private long arrayList(ArrayList<?> list) {
+		if (list == null || !counted.add(list)) {
+			return 0;
+		}
+		long size = align(12 + 4 + 4 + 4);
+		if (!list.isEmpty()) {
+			int capacity = 10;
+			while (capacity < list.size()) {
+				capacity += capacity >> 1;
+			}
+			size += align(16 + 4L * capacity);
+		}
+		return size;
+	}
+
+	private long objectIntMap(ObjectIntHashMap<String> map) {
+		if (map == null || !counted.add(map)) {
+			return 0;
+		}
+		long size = align(12 + 2 * 4 + 2 * 4) + 2 * align(16 + 4L * map.capacity());
+		for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)) {
+			size += string(map.keyAt(slot));
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the size of the map, its table and its nodes, without the keys and values.
+	 * The table length is estimated from the size as HashMap would grow it.
+	 */
+	private long hashMap(HashMap<?, ?> map) {
+		if (!counted.add(map)) {
+			return 0;
+		}
+		long size = align(12 + 4 * 4 + 3 * 4 + 4);
+		if (!map.isEmpty()) {
+			int tableLength = 16;
+			while (tableLength * 0.75 < map.size()) {
+				tableLength <<= 1;
+			}
+			size += align(16 + 4L * tableLength) + align(12 + 4 + 3 * 4) * (long) map.size();
+		}
+		return size;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
@@ -0,0 +1,175 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import main.collections.ObjectIntHashMap;
+
+/**
+ * Classifies the test stories with several models in one pass and prints their precision and
+ * recall side by side. The terms of each story are looked up once for each group of models with
+ * the same term index, and the scores are summed in the same order as StoryClassifier does,
+ * so every model makes the same decisions as when it is evaluated alone. The decisions of models added
+ * with their published snapshot are added to the metrics of StoryClassifier under the snapshot version,
+ * and the scoring times of the model which is live when the evaluation runs.
+ */
+public class ModelEvaluator {
+	private final ArrayList<String> names = new ArrayList<>();
+	private final ArrayList<TopicModel> models = new ArrayList<>();
+	// Version of the published snapshot of each model, or -1 if it was added without one.
+	private final ArrayList<Long> versions = new ArrayList<>();
+	// Index of the term index group of each model.
+	private final ArrayList<Integer> groups = new ArrayList<>();
+	private final IdentityHashMap<Object, Integer> termIndexes = new IdentityHashMap<>();
+	// A model of each group, used to look up the term ids.
+	private final ArrayList<TopicModel> groupModels = new ArrayList<>();
+
+	/**
+	 * Adds a model to the evaluation.
+	 */
+	public ModelEvaluator add(String name, TopicModel model) {
+		return add(name, model, -1);
+	}
+
+	/**
+	 * Adds the model of a published snapshot to the evaluation, recording its decisions under the snapshot version.
+	 */
+	public ModelEvaluator add(String name, ModelSnapshot snapshot) {
+		return add(name, snapshot.getModel(), snapshot.getVersion());
+	}
+
+	private ModelEvaluator add(String name, TopicModel model, long version) {
+		Integer group = termIndexes.get(model.getTermIndex());
+		if (group == null) {
+			group = groupModels.size();
+			termIndexes.put(model.getTermIndex(), group);
+			groupModels.add(model);
+		}
+		names.add(name);
+		models.add(model);
+		versions.add(version);
+		groups.add(group);
+		return this;
+	}
+
+	/**
+	 * Classifies the test stories of the documents with every model, prints the report
+	 * and returns the confusion matrix of each model, indexed by actual and classified topic.
+	 */
+	public int[][][] evaluate(ArrayList<ArrayList<NewsStory>> documents) {
+		int topicCount = Constants.topicsSet.size();
+		int[][][] confusion = new int[models.size()][topicCount][topicCount];
+		ClassifierMetrics metrics = StoryClassifier.getMetrics();
+		ModelSnapshot live = StoryClassifier.getLiveModel();
+		long liveVersion = (live == null ? -1 : live.getVersion());
+		// Term ids of the current story for each group, and the counts of its terms.
+		int[][] termIDs = new int[groupModels.size()][16];
+		int[] termCounts = new int[16];
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				// Only consider test documents.
+				if (!story.lewissplit.equals("TEST")) {
+					continue;
+				}
+				ObjectIntHashMap<String> counts = story.termCounts;
+				if (counts.size() > termCounts.length) {
+					termCounts = new int[2 * counts.size()];
+					for (int group = 0; group < termIDs.length; group++) {
+						termIDs[group] = new int[termCounts.length];
+					}
+				}
+				int termCount = 0;
+				for (int slot = counts.nextSlot(-1); slot >= 0; slot = counts.nextSlot(slot)) {
+					for (int group = 0; group < termIDs.length; group++) {
+						termIDs[group][termCount] = groupModels.get(group).getTermID(counts.keyAt(slot));
+					}
+					termCounts[termCount++] = counts.valueAt(slot);
+				}
+				int actual = Constants.topicsSet.indexOf(story.topic);
+				for (int model = 0; model < models.size(); model++) {
+					long version = versions.get(model);
+					long start = System.nanoTime();
+					int classified = classify(models.get(model), termIDs[groups.get(model)], termCounts, termCount);
+					if (version >= 0 && version == liveVersion) {
+						metrics.recordScoring(System.nanoTime() - start);
+					}
+					confusion[model][actual][classified]++;
+					if (version >= 0) {
+						metrics.recordDecision(version, actual, classified);
+					}
+				}
+			}
+		}
+		print(confusion);
+		return confusion;
+	}
+
+	/**
+	 * Returns the index of the topic with the maximum probability, like StoryClassifier.classify.
+	 */
+	private static int classify(TopicModel model, int[] termIDs, int[] termCounts, int termCount) {
+		int currentType = 0;
+		double currentProb = 0;
+		for (int topic = 0; topic < Constants.topicsSet.size(); topic++) {
+			double prob = model.getTopicProbability(topic);
+			for (int term = 0; term < termCount; term++) {
+				if (termIDs[term] >= 0) {
+					prob += model.getTermProbability(topic, termIDs[term]) * termCounts[term];
+				}
+			}
+			if (topic == 0 || prob > currentProb) {
+				currentProb = prob;
+				currentType = topic;
+			}
+		}
+		return currentType;
+	}
+
+	/**
+	 * Prints the accuracy and the precision and recall of each topic, with one column for each model.
+	 */
+	private void print(int[][][] confusion) {
+		int topicCount = Constants.topicsSet.size();
+		StringBuilder header = new StringBuilder(String.format("%-24s", "Model"));
+		StringBuilder accuracy = new StringBuilder(String.format("%-24s", "Correctly classified"));
+		StringBuilder weights = new StringBuilder(String.format("%-24s", "Weight bytes"));
+		String[] precision = new String[topicCount];
+		String[] recall = new String[topicCount];
+		for (int topic = 0; topic < topicCount; topic++) {
+			precision[topic] = String.format("%-24s", "Precision " + Constants.topicsSet.get(topic));
+			recall[topic] = String.format("%-24s", "Recall " + Constants.topicsSet.get(topic));
+		}
+		for (int model = 0; model < models.size(); model++) {
+			int correct = 0;
+			int total = 0;
+			for (int topic = 0; topic < topicCount; topic++) {
+				correct += confusion[model][topic][topic];
+				total += Arrays.stream(confusion[model][topic]).sum();
+			}
+			String name = names.get(model);
+			int width = Math.max(18, name.length() + 2);
+			header.append(String.format("%" + width + "s", name));
+			accuracy.append(String.format("%" + width + "s", String.format("%d/%d=%.4f", correct, total, correct/(double)total)));
+			weights.append(String.format("%" + width + "d", models.get(model).getWeightBytes()));
+			for (int topic = 0; topic < topicCount; topic++) {
+				int classified = 0;
+				for (int actual = 0; actual < topicCount; actual++) {
+					classified += confusion[model][actual][topic];
+				}
+				int actual = Arrays.stream(confusion[model][topic]).sum();
+				precision[topic] += String.format("%" + width + ".4f", confusion[model][topic][topic]/(double)classified);
+				recall[topic] += String.format("%" + width + ".4f", confusion[model][topic][topic]/(double)actual);
+			}
+		}
+		System.out.println();
+		System.out.println(header);
+		System.out.println(accuracy);
+		System.out.println(weights);
+		for (int topic = 0; topic < topicCount; topic++) {
+			System.out.println(precision[topic]);
+			System.out.println(recall[topic]);
+		}
+		System.out.println();
+	}
+}
@@ -0,0 +1,23 @@
+package main;
+
+/**
+ * A published version of a model. Models are never changed after they are published;
+ * a retrained or loaded model is published as a new snapshot with a higher version.
+ */
+public final class ModelSnapshot {
+	private final TopicModel model;
+	private final long version;
+
+	ModelSnapshot(TopicModel model, long version) {
+		this.model = model;
+		this.version = version;
+	}
+
+	public TopicModel getModel() {
+		return model;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+}
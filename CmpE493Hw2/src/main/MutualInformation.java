@@ -0,0 +1,72 @@
+package main;
+
+import main.collections.IntDoubleHashMap;
+
+/**
+ * Mutual information of terms and topics, used to select the most distinctive terms of each topic.
+ */
+public class MutualInformation {
+	/**
+	 * Number of terms kept for each topic.
+	 */
+	public static final int TERMS_PER_TOPIC = 50;
+
+	/**
+	 * Calculates the mutual information of a term and a topic from the number of
+	 * documents containing the term in and out of the topic, the number of documents
+	 * of the topic and the total number of documents.
+	 */
+	public static double calculate(int yTermYTopic, int yTermNTopic, int topicDocCount, int totalDocCount) {
+		// The stories not containing this term and are from this topic.
+		int nTermYTopic = topicDocCount - yTermYTopic;
+		// The stories not containing this term and are not from this topic.
+		int nTermNTopic = totalDocCount - topicDocCount - yTermNTopic;
+		
+		// Prepare the parts of the sum
+		double part1 = (yTermYTopic/(double)totalDocCount) 
+				* Math.log((yTermYTopic*totalDocCount) / (double)((yTermYTopic + yTermNTopic)*(yTermYTopic + nTermYTopic)));
+		double part2 = (nTermYTopic/(double)totalDocCount) 
+				* Math.log((nTermYTopic*totalDocCount) / (double)((nTermYTopic + nTermNTopic)*(yTermYTopic + nTermYTopic)));
+		double part3 = (yTermNTopic/(double)totalDocCount) 
+				* Math.log((yTermNTopic*totalDocCount) / (double)((yTermYTopic + yTermNTopic)*(yTermNTopic + nTermNTopic)));
+		double part4 = (nTermNTopic/(double)totalDocCount) 
+				* Math.log((nTermNTopic*totalDocCount) / (double)((nTermYTopic + nTermNTopic)*(yTermNTopic + nTermNTopic)));
+				
+		// Calculate mutual information of the term.
+		return part1 + part2 + part3 + part4;
+	}
+
+	/**
+	 * Returns the value to rank a mutual information by. Values which are not finite,
+	 * such as the NaN of a term in every story of a topic, rank lowest.
+	 */
+	public static double rankValue(double mutualInformation) {
+		return (Double.isNaN(mutualInformation) || Double.isInfinite(mutualInformation)
+				? Double.NEGATIVE_INFINITY : mutualInformation);
+	}
+
+	/**
+	 * Keeps the given number of terms with the highest values in the map.
+	 * Adds the term if the map is not full yet, otherwise replaces the term
+	 * with the lowest value if the new value is higher. Values are ranked by rankValue.
+	 */
+	public static void keepHighest(IntDoubleHashMap values, int term, double value, int limit) {
+		value = rankValue(value);
+		if (values.size() < limit) {
+			values.put(term, value);
+			return;
+		}
+		int minKey = -1;
+		double minVal = Double.POSITIVE_INFINITY;
+		for (int slot = values.nextSlot(-1); slot >= 0; slot = values.nextSlot(slot)) {
+			if (minKey < 0 || minVal > values.valueAt(slot)) {
+				minVal = values.valueAt(slot);
+				minKey = values.keyAt(slot);
+			}	
+		}
+		if (minVal < value) {
+			values.remove(minKey);
+			values.put(term, value);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import main.collections.SpaceSaving;
+
+/**
+ * Extracts phrases of 2 (and optionally 3) consecutive stemmed tokens such as "crude oil".
+ * Phrases of the training stories are counted in a Space-Saving summary, so memory is bounded
+ * by its capacity however many distinct phrases there are. Only phrases whose count is
+ * guaranteed to reach the support threshold are added to the stories as terms.
+ * Phrases do not cross from the title into the body.
+ */
+public class NGramExtractor {
+	private final int maxLength;
+	private final int support;
+	private final SpaceSaving<String> counts;
+	private Set<String> phrases = new HashSet<>();
+
+	/**
+	 * Creates an extractor for phrases of 2 to maxLength tokens which occur at least support times,
+	 * counting at most capacity phrases at a time.
+	 */
+	public NGramExtractor(int maxLength, int support, int capacity) {
+		if (maxLength < 2 || maxLength > 3) {
+			throw new IllegalArgumentException("Phrases must be 2 or 3 tokens long: " + maxLength);
+		}
+		this.maxLength = maxLength;
+		this.support = support;
+		this.counts = new SpaceSaving<>(capacity);
+	}
+
+	/**
+	 * Counts the phrases of the training stories and selects the frequent ones.
+	 */
+	public void count(ArrayList<ArrayList<NewsStory>> documents) {
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				// Only use training documents.
+				if (!story.lewissplit.equals("TRAIN")) {
+					continue;
+				}
+				for (String phrase : extract(story.titleTokens)) {
+					counts.offer(phrase, 1);
+				}
+				for (String phrase : extract(story.bodyTokens)) {
+					counts.offer(phrase, 1);
+				}
+			}
+		}
+		phrases = new HashSet<>(counts.getGuaranteed(support));
+	}
+
+	/**
+	 * Adds the occurrences of the selected phrases to the term counts of every story.
+	 */
+	public void addPhrases(ArrayList<ArrayList<NewsStory>> documents) {
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				addPhrases(story);
+			}
+		}
+	}
+
+	/**
+	 * Adds the occurrences of the selected phrases to the term counts of the tokenized story.
+	 */
+	public void addPhrases(NewsStory story) {
+		for (String phrase : extract(story.titleTokens)) {
+			if (phrases.contains(phrase)) {
+				story.termCounts.increment(phrase);
+			}
+		}
+		for (String phrase : extract(story.bodyTokens)) {
+			if (phrases.contains(phrase)) {
+				story.termCounts.increment(phrase);
+			}
+		}
+	}
+
+	/**
+	 * Returns the selected phrases.
+	 */
+	public Set<String> getPhrases() {
+		return phrases;
+	}
+
+	/**
+	 * Returns the phrases of the token stream, joining the tokens with spaces.
+	 * Tokens never contain spaces, so phrases cannot be confused with single terms.
+	 */
+	private ArrayList<String> extract(ArrayList<String> tokens) {
+		ArrayList<String> result = new ArrayList<>();
+		for (int i = 0; i + 1 < tokens.size(); i++) {
+			String bigram = tokens.get(i) + " " + tokens.get(i + 1);
+			result.add(bigram);
+			if (maxLength == 3 && i + 2 < tokens.size()) {
+				result.add(bigram + " " + tokens.get(i + 2));
+			}
+		}
+		return result;
+	}
+}
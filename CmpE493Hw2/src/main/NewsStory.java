@@ -1,7 +1,8 @@
 package main;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+
+import main.collections.ObjectIntHashMap;
 
 public class NewsStory {
 	int storyID;
@@ -12,5 +13,5 @@ public class NewsStory {
 	ArrayList<String> bodyTokens = new ArrayList<>();
 	String topic = "";
 	ArrayList<String> text = new ArrayList<>();
-	HashMap<String, Integer> termCounts = new HashMap<>();
+	ObjectIntHashMap<String> termCounts = new ObjectIntHashMap<>();
 }
\ No newline at end of file
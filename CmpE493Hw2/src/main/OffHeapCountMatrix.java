@@ -0,0 +1,89 @@
+package main;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import main.collections.ObjectIntHashMap;
+
+/**
+ * Matrix of term counts per topic which is stored in direct memory, as the input of OffHeapTopicModel.compile.
+ * Rows are topics (indexes in Constants.topicsSet), columns are term ids.
+ * It is filled from counts which were collected on the heap, so it does not lower the peak heap
+ * of counting; what stays off the heap is the compiled model.
+ */
+public class OffHeapCountMatrix {
+	private final int topicCount;
+	private final int termCount;
+	private final IntBuffer counts;
+
+	/**
+	 * Creates a matrix in direct memory with all counts set to zero.
+	 */
+	public OffHeapCountMatrix(int topicCount, int termCount) {
+		this.topicCount = topicCount;
+		this.termCount = termCount;
+		this.counts = ByteBuffer.allocateDirect(byteSize(topicCount, termCount)).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	/**
+	 * Copies the term counts of each topic into a new matrix in direct memory.
+	 * Term ids are the indexes in the dictionary.
+	 */
+	public static OffHeapCountMatrix fromTermCounts(HashMap<String, ObjectIntHashMap<String>> termCounts,
+			ArrayList<String> dictionary) {
+		OffHeapCountMatrix matrix = new OffHeapCountMatrix(Constants.topicsSet.size(), dictionary.size());
+		for (int topic = 0; topic < Constants.topicsSet.size(); topic++) {
+			ObjectIntHashMap<String> termCountsOfTopic = termCounts.get(Constants.topicsSet.get(topic));
+			for (int term = 0; term < dictionary.size(); term++) {
+				matrix.increment(topic, term, termCountsOfTopic.get(dictionary.get(term)));
+			}
+		}
+		return matrix;
+	}
+
+	public int getTopicCount() {
+		return topicCount;
+	}
+
+	public int getTermCount() {
+		return termCount;
+	}
+
+	public int get(int topic, int term) {
+		return counts.get(index(topic, term));
+	}
+
+	/**
+	 * Adds the given amount to the count of the term for the topic.
+	 */
+	public void increment(int topic, int term, int amount) {
+		int index = index(topic, term);
+		counts.put(index, counts.get(index) + amount);
+	}
+
+	/**
+	 * Returns the sum of the counts of all terms for the topic.
+	 */
+	public long getTopicTotal(int topic) {
+		long total = 0;
+		for (int term = 0; term < termCount; term++) {
+			total += counts.get(index(topic, term));
+		}
+		return total;
+	}
+
+	private int index(int topic, int term) {
+		return topic * termCount + term;
+	}
+
+	private static int byteSize(int topicCount, int termCount) {
+		long size = 4L * topicCount * termCount;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Count matrix of " + size + " bytes does not fit in one buffer.");
+		}
+		return (int) size;
+	}
+}
@@ -0,0 +1,177 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import main.collections.FrontCodedVocabulary;
+
+/**
+ * Model which keeps the term probabilities outside of the heap,
+ * either in direct memory or in a memory mapped model file.
+ * A model file can be mapped read only by several processes at the same time.
+ *
+ * The model file contains the following, in native byte order:
+ * - magic number, topic count and term count as ints
+ * - log probability of each topic as doubles
+ * - byte size of the vocabulary as an int, then the terms as a FrontCodedVocabulary,
+ *   whose ids are the term ids and which keeps its own byte order
+ * - padding up to a multiple of 8 bytes
+ * - term probabilities as doubles, with the topics of one term next to each other.
+ */
+public class OffHeapTopicModel implements TopicModel {
+	private static final int MAGIC = 0x4E42_4D32;
+	// Terms by id. A loaded model reads them from the mapped file, so they do not take heap space.
+	private final FrontCodedVocabulary vocabulary;
+	private final double[] topicProbabilities;
+	private final ByteBuffer weights;
+
+	private OffHeapTopicModel(FrontCodedVocabulary vocabulary, double[] topicProbabilities, ByteBuffer weights) {
+		this.vocabulary = vocabulary;
+		this.topicProbabilities = topicProbabilities;
+		this.weights = weights.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Calculates the term probabilities from the count matrix with add-one smoothing.
+	 * If a file is given, the model is written to a temporary file next to it, which then replaces it,
+	 * and the model is mapped read only from the file. Processes which have mapped the previous model
+	 * keep reading it, as the previous file is never changed. Otherwise the probabilities are kept in direct memory.
+	 * Term ids of the count matrix are the indexes in the dictionary; the term ids of the model
+	 * are the ids of the terms in the vocabulary.
+	 */
+	public static OffHeapTopicModel compile(OffHeapCountMatrix counts, double[] topicProbabilities,
+			ArrayList<String> dictionary, Path file) throws IOException {
+		int topicCount = topicProbabilities.length;
+		FrontCodedVocabulary vocabulary = FrontCodedVocabulary.build(dictionary);
+		ByteBuffer header = encodeHeader(topicProbabilities, vocabulary);
+		long weightBytes = 8L * topicCount * dictionary.size();
+		if (weightBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Model of " + weightBytes + " bytes does not fit in one buffer.");
+		}
+		if (file == null) {
+			ByteBuffer weights = ByteBuffer.allocateDirect((int) weightBytes);
+			putWeights(counts, dictionary, vocabulary, weights);
+			return new OffHeapTopicModel(vocabulary, topicProbabilities.clone(), weights);
+		}
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.write(header);
+			MappedByteBuffer weights = channel.map(FileChannel.MapMode.READ_WRITE, header.limit(), weightBytes);
+			putWeights(counts, dictionary, vocabulary, weights);
+			weights.force();
+			channel.force(true);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return load(file);
+	}
+
+	/**
+	 * Puts the log probabilities of the terms, calculated from the counts, into the weights.
+	 */
+	private static void putWeights(OffHeapCountMatrix counts, ArrayList<String> dictionary,
+			FrontCodedVocabulary vocabulary, ByteBuffer weights) {
+		int topicCount = counts.getTopicCount();
+		weights.order(ByteOrder.nativeOrder());
+		// Denominator: total number of terms in the topic + dictionary size.
+		long[] denominators = new long[topicCount];
+		for (int topic = 0; topic < topicCount; topic++) {
+			denominators[topic] = counts.getTopicTotal(topic) + dictionary.size();
+		}
+		for (int term = 0; term < dictionary.size(); term++) {
+			int termID = vocabulary.get(dictionary.get(term));
+			for (int topic = 0; topic < topicCount; topic++) {
+				int numerator = counts.get(topic, term) + 1;
+				weights.putDouble(8 * (termID * topicCount + topic), Math.log(numerator/(double)denominators[topic]));
+			}
+		}
+	}
+
+	/**
+	 * Maps a model file written by compile. The term probabilities are not copied into the heap.
+	 */
+	public static OffHeapTopicModel load(Path file) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.nativeOrder());
+		int magic = buffer.getInt();
+		if (magic == 0x4E42_4D31) {
+			throw new IOException("Model file " + file + " has the format before the front coded vocabulary, write it again.");
+		}
+		if (magic != MAGIC) {
+			throw new IOException("Not a model file: " + file);
+		}
+		int topicCount = buffer.getInt();
+		int termCount = buffer.getInt();
+		double[] topicProbabilities = new double[topicCount];
+		for (int topic = 0; topic < topicCount; topic++) {
+			topicProbabilities[topic] = buffer.getDouble();
+		}
+		int vocabularySize = buffer.getInt();
+		FrontCodedVocabulary vocabulary = FrontCodedVocabulary.wrap(buffer);
+		if (vocabulary.size() != termCount) {
+			throw new IOException("Model file " + file + " has " + vocabulary.size() + " terms instead of " + termCount);
+		}
+		buffer.position(align(buffer.position() + vocabularySize));
+		return new OffHeapTopicModel(vocabulary, topicProbabilities, buffer.slice());
+	}
+
+	@Override
+	public int getTermID(String term) {
+		return vocabulary.get(term);
+	}
+
+	@Override
+	public double getTopicProbability(int topic) {
+		return topicProbabilities[topic];
+	}
+
+	@Override
+	public double getTermProbability(int topic, int termID) {
+		return weights.getDouble(8 * (termID * topicProbabilities.length + topic));
+	}
+
+	@Override
+	public long getWeightBytes() {
+		return 8L * topicProbabilities.length * vocabulary.size();
+	}
+
+	@Override
+	public Object getTermIndex() {
+		return vocabulary;
+	}
+
+	private static ByteBuffer encodeHeader(double[] topicProbabilities, FrontCodedVocabulary vocabulary) {
+		ByteBuffer terms = vocabulary.getBytes();
+		int size = 16 + 8 * topicProbabilities.length + terms.remaining();
+		ByteBuffer header = ByteBuffer.allocate(align(size)).order(ByteOrder.nativeOrder());
+		header.putInt(MAGIC).putInt(topicProbabilities.length).putInt(vocabulary.size());
+		for (double prob : topicProbabilities) {
+			header.putDouble(prob);
+		}
+		header.putInt(terms.remaining()).put(terms);
+		header.clear();
+		return header;
+	}
+
+	/**
+	 * Returns the terms of the model, which can be looked up and enumerated by prefix without the model.
+	 */
+	public FrontCodedVocabulary getVocabulary() {
+		return vocabulary;
+	}
+
+	private static int align(int position) {
+		return (position + 7) & ~7;
+	}
+}
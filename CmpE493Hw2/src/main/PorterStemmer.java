@@ -49,6 +49,63 @@ class PorterStemmer
       for (int c = 0; c < wLen; c++) b[i++] = w[c];
    }
 
+   /**
+    * Receives the result of stem(char[], int, int, Callback) in the internal
+    * buffer of the stemmer, which is only valid until the next word is stemmed.
+    */
+   public interface Callback
+   {  int accept(char[] buffer, int length);
+   }
+
+   /**
+    * Stems the wLen characters of w starting at off in place and returns the
+    * length of the result, which is never longer than the word.  Does not
+    * allocate once the internal buffer is large enough, so one stemmer can be
+    * reused for any number of words.  Use one stemmer per thread.
+    */
+   public int stem(char[] w, int off, int wLen)
+   {  load(w, off, wLen);
+      stem();
+      System.arraycopy(b, 0, w, off, i_end);
+      return i_end;
+   }
+
+   /**
+    * Stems the characters of s between start and end.  The result can be
+    * retrieved with getResultBuffer()/getResultLength(); its length is returned.
+    */
+   public int stem(CharSequence s, int start, int end)
+   {  ensureCapacity(end - start);
+      for (int c = start; c < end; c++) b[c - start] = s.charAt(c);
+      i = end - start;
+      stem();
+      return i_end;
+   }
+
+   /**
+    * Stems the wLen characters of w starting at off without changing w and
+    * returns what the callback returns for the result, e.g. a vocabulary id.
+    */
+   public int stem(char[] w, int off, int wLen, Callback callback)
+   {  load(w, off, wLen);
+      stem();
+      return callback.accept(b, i_end);
+   }
+
+   /* load(w, off, wLen) replaces the word being stemmed with a portion of w. */
+
+   private final void load(char[] w, int off, int wLen)
+   {  ensureCapacity(wLen);
+      System.arraycopy(w, off, b, 0, wLen);
+      i = wLen;
+   }
+
+   /* ensureCapacity(n) makes sure that a word of n characters fits in b. */
+
+   private final void ensureCapacity(int n)
+   {  if (n > b.length) b = new char[n + INC];
+   }
+
    /**
     * After a word has been stemmed, it can be retrieved by toString(),
     * or a reference to the internal buffer can be retrieved by getResultBuffer
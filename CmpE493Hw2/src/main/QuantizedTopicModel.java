@@ -0,0 +1,116 @@
+package main;
+
+import main.collections.ObjectIntHashMap;
+
+/**
+ * Model which stores the term probabilities with reduced precision,
+ * either as floats or as 8/16 bit integers scaled between
+ * the minimum and maximum log probability of each topic.
+ */
+public class QuantizedTopicModel implements TopicModel {
+	public enum Precision {
+		FLOAT, INT16, INT8
+	}
+
+	private final Precision precision;
+	private final ObjectIntHashMap<String> termIDs;
+	private final double[] topicProbabilities;
+	// Only one of the weight arrays is used, depending on the precision.
+	private float[][] floatWeights;
+	private short[][] shortWeights;
+	private byte[][] byteWeights;
+	// Per topic offset and scale of the integer weights.
+	private final double[] offsets;
+	private final double[] scales;
+
+	/**
+	 * Quantizes the term probabilities of the given full precision model.
+	 * The dictionary of the given model is shared, not copied.
+	 */
+	public QuantizedTopicModel(DenseTopicModel model, Precision precision) {
+		this.precision = precision;
+		this.termIDs = model.termIDs;
+		this.topicProbabilities = model.topicProbabilities.clone();
+		int topicCount = model.termProbabilities.length;
+		int termCount = termIDs.size();
+		offsets = new double[topicCount];
+		scales = new double[topicCount];
+		switch (precision) {
+		case FLOAT:
+			floatWeights = new float[topicCount][termCount];
+			break;
+		case INT16:
+			shortWeights = new short[topicCount][termCount];
+			break;
+		case INT8:
+			byteWeights = new byte[topicCount][termCount];
+			break;
+		}
+		for (int topic = 0; topic < topicCount; topic++) {
+			double[] probs = model.termProbabilities[topic];
+			// Find the range of the log probabilities of this topic.
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (double prob : probs) {
+				min = Math.min(min, prob);
+				max = Math.max(max, prob);
+			}
+			offsets[topic] = min;
+			if (precision == Precision.INT16) {
+				scales[topic] = (max > min ? (max - min) / 65535 : 1);
+			} else if (precision == Precision.INT8) {
+				scales[topic] = (max > min ? (max - min) / 255 : 1);
+			}
+			for (int id = 0; id < termCount; id++) {
+				switch (precision) {
+				case FLOAT:
+					floatWeights[topic][id] = (float) probs[id];
+					break;
+				case INT16:
+					shortWeights[topic][id] = (short) (Math.round((probs[id] - min) / scales[topic]) + Short.MIN_VALUE);
+					break;
+				case INT8:
+					byteWeights[topic][id] = (byte) (Math.round((probs[id] - min) / scales[topic]) + Byte.MIN_VALUE);
+					break;
+				}
+			}
+		}
+	}
+
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	@Override
+	public int getTermID(String term) {
+		return termIDs.getOrDefault(term, -1);
+	}
+
+	@Override
+	public double getTopicProbability(int topic) {
+		return topicProbabilities[topic];
+	}
+
+	@Override
+	public double getTermProbability(int topic, int termID) {
+		switch (precision) {
+		case FLOAT:
+			return floatWeights[topic][termID];
+		case INT16:
+			return offsets[topic] + (shortWeights[topic][termID] - Short.MIN_VALUE) * scales[topic];
+		default:
+			return offsets[topic] + (byteWeights[topic][termID] - Byte.MIN_VALUE) * scales[topic];
+		}
+	}
+
+	@Override
+	public long getWeightBytes() {
+		long bytesPerWeight = (precision == Precision.FLOAT ? 4 : precision == Precision.INT16 ? 2 : 1);
+		return bytesPerWeight * topicProbabilities.length * termIDs.size() + 16L * topicProbabilities.length;
+	}
+
+	@Override
+	public Object getTermIndex() {
+		return termIDs;
+	}
+}
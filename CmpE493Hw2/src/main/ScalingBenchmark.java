@@ -0,0 +1,193 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Runs the full Main pipeline on synthetic corpora of several sizes and reports the time of each
+ * stage, the peak heap and the stories per second, so that stages which grow faster than the corpus
+ * show up before they are met with real data. The stages are split at the progress messages of Main,
+ * and the time per story of each stage is compared with the smallest scale.
+ *
+ * Each scale runs in a fresh JVM, so the static state of Main and StoryClassifier (models, cache,
+ * metrics, pools) does not carry over between scales, and every scale pays the same JIT warm-up.
+ * The peak heap is the highest used heap after a garbage collection at the stage boundaries, which
+ * is what the pipeline retains between stages; the collections are not counted in the stage times.
+ *
+ * Usage: java -cp out main.ScalingBenchmark [--scales=0.1,0.3,1] [--directory=dir] [--seed=N] [--keep]
+ * A scale of 1 is as many stories as the real collection. Other arguments are passed to Main.
+ */
+public class ScalingBenchmark {
+	private final PrintStream out = System.out;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length >= 2 && args[0].equals("run")) {
+			runStages(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		String scales = Main.getOption(args, "scales");
+		String directory = Main.getOption(args, "directory");
+		String seed = Main.getOption(args, "seed");
+		ArrayList<String> mainArgs = new ArrayList<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--scales") && !arg.startsWith("--directory") && !arg.startsWith("--seed")
+					&& !arg.equals("--keep")) {
+				mainArgs.add(arg);
+			}
+		}
+		boolean keep = Main.getOption(args, "keep") != null;
+		Path root = (directory == null ? Files.createTempDirectory("corpus") : Paths.get(directory));
+		try {
+			new ScalingBenchmark().run(scales == null ? new String[] { "0.1", "0.3", "1" } : scales.split(","), root,
+					seed == null ? 1 : Long.parseLong(seed), keep, mainArgs);
+		} finally {
+			// A temporary directory is only deleted if it was created here.
+			if (directory == null && !keep) {
+				delete(root);
+			}
+		}
+	}
+
+	/**
+	 * Generates a corpus in a subdirectory of the directory for each scale, runs Main on it with the
+	 * given arguments in a new JVM and prints the results. The corpora are deleted afterwards unless they are kept.
+	 */
+	public void run(String[] scales, Path directory, long seed, boolean keep, ArrayList<String> mainArgs)
+			throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ArrayList<String> rows = new ArrayList<>();
+		LinkedHashMap<String, Double> baseTimesPerStory = null;
+		for (String scale : scales) {
+			int stories = (int) Math.round(Double.parseDouble(scale.trim()) * SyntheticCorpus.REUTERS_STORIES);
+			Path corpus = directory.resolve("scale-" + scale.trim());
+			out.println("Generating " + stories + " stories in " + corpus + "...");
+			long start = System.nanoTime();
+			new SyntheticCorpus(seed, SyntheticCorpus.vocabularySize(stories)).write(corpus, stories);
+			out.println("Generating " + stories + " stories DONE in " + seconds(System.nanoTime() - start) + " s.");
+			// Run the pipeline in a new JVM, which prints its stage times and peak heap.
+			ArrayList<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+					ScalingBenchmark.class.getName(), "run"));
+			command.addAll(mainArgs);
+			command.add("--input=" + corpus);
+			Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			LinkedHashMap<String, Long> stageTimes = new LinkedHashMap<>();
+			long peakHeap = 0;
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+					StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t");
+					if (fields[0].equals("stage")) {
+						stageTimes.put(fields[1], Long.parseLong(fields[2]));
+					} else if (fields[0].equals("heap")) {
+						peakHeap = Long.parseLong(fields[1]);
+					}
+				}
+			}
+			int exitCode = process.waitFor();
+			if (exitCode != 0) {
+				out.println("The pipeline failed on scale " + scale.trim() + " with exit code " + exitCode + ".");
+				return;
+			}
+			// Print the stages.
+			LinkedHashMap<String, Double> timesPerStory = new LinkedHashMap<>();
+			long total = 0;
+			for (Map.Entry<String, Long> stage : stageTimes.entrySet()) {
+				long time = stage.getValue();
+				total += time;
+				timesPerStory.put(stage.getKey(), time / (double) stories);
+				String growth = "";
+				if (baseTimesPerStory != null && baseTimesPerStory.containsKey(stage.getKey())) {
+					growth = String.format(", %.2fx time per story of the first scale",
+							time / (double) stories / baseTimesPerStory.get(stage.getKey()));
+				}
+				out.println("  " + stage.getKey() + ": " + seconds(time) + " s" + growth);
+			}
+			if (baseTimesPerStory == null) {
+				baseTimesPerStory = timesPerStory;
+			}
+			rows.add(String.format("%8s %10d %10.3f %12.0f %12d", scale.trim(), stories, total / 1e9,
+					stories / (total / 1e9), peakHeap >> 20));
+			if (!keep) {
+				delete(corpus);
+			}
+		}
+		out.println(String.format("%8s %10s %10s %12s %12s", "Scale", "Stories", "Seconds", "Stories/sec", "Peak MB"));
+		for (String row : rows) {
+			out.println(row);
+		}
+	}
+
+	/**
+	 * Runs Main with the given arguments and its output captured, and prints a "stage" line with the
+	 * name and time in nanoseconds of each stage and a "heap" line with the peak used heap after a
+	 * garbage collection at the stage boundaries, separated by tabs.
+	 */
+	private static void runStages(String[] mainArgs) {
+		PrintStream out = System.out;
+		ArrayList<String> names = new ArrayList<>();
+		ArrayList<Long> starts = new ArrayList<>();
+		ArrayList<Long> ends = new ArrayList<>();
+		long[] peakHeap = new long[1];
+		Runnable boundary = () -> {
+			ends.add(System.nanoTime());
+			System.gc();
+			Runtime runtime = Runtime.getRuntime();
+			peakHeap[0] = Math.max(peakHeap[0], runtime.totalMemory() - runtime.freeMemory());
+			starts.add(System.nanoTime());
+		};
+		System.setOut(new PrintStream(new OutputStream() {
+			private final StringBuilder line = new StringBuilder();
+
+			@Override
+			public void write(int b) {
+				if (b != '\n') {
+					line.append((char) b);
+					return;
+				}
+				if (line.toString().endsWith("...")) {
+					boundary.run();
+					names.add(line.substring(0, line.length() - 3));
+				}
+				line.setLength(0);
+			}
+		}, true));
+		try {
+			Main.main(mainArgs);
+		} finally {
+			System.setOut(out);
+		}
+		boundary.run();
+		// Stage i runs from its boundary to the next one.
+		for (int i = 0; i < names.size(); i++) {
+			out.println("stage\t" + names.get(i) + "\t" + (ends.get(i + 1) - starts.get(i)));
+		}
+		out.println("heap\t" + peakHeap[0]);
+	}
+
+	private static String seconds(long nanos) {
+		return String.format("%.3f", nanos / 1e9);
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+}
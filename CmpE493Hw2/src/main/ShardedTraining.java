@@ -0,0 +1,146 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Trains on the documents with several worker processes. Each worker counts the training stories of
+ * a consecutive range of the documents and writes its TrainingCounts to a partial file. The coordinator
+ * starts the workers, merges their partial files in document order and compiles the full and the mutual
+ * information models, which are the same as with one process since the counts are additive and the
+ * terms keep the order they are first seen in.
+ *
+ * Usage:
+ *   java -cp out main.ShardedTraining coordinator directory|glob workers workDirectory [--model=file] [--verify]
+ *   java -cp out main.ShardedTraining worker directory|glob worker workers partialFile
+ * --model writes the mutual information model to a file which can be loaded with --shadow-model.
+ * --verify also trains in the coordinator process and checks that the models are the same.
+ */
+public class ShardedTraining {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length >= 4 && args[0].equals("coordinator")) {
+			coordinate(args[1], Integer.parseInt(args[2]), Paths.get(args[3]), Main.getOption(args, "model"),
+					Main.getOption(args, "verify") != null);
+		} else if (args.length >= 5 && args[0].equals("worker")) {
+			int worker = Integer.parseInt(args[2]);
+			int workers = Integer.parseInt(args[3]);
+			StoryTokenizer.setStopWords(Main.readStopWords());
+			List<Path> files = getShard(Main.findDocuments(args[1]), worker, workers);
+			TrainingCounts counts = count(files);
+			counts.write(Paths.get(args[4]));
+			System.out.println("Worker " + (worker + 1) + "/" + workers + " counted " + counts.getDocumentCount()
+					+ " training stories of " + files.size() + " documents.");
+		} else {
+			System.out.println("Usage: ShardedTraining coordinator directory|glob workers workDirectory [--model=file] [--verify]");
+			System.out.println("       ShardedTraining worker directory|glob worker workers partialFile");
+		}
+	}
+
+	/**
+	 * Starts the worker processes, waits for them and merges their partial files.
+	 */
+	private static void coordinate(String input, int workers, Path workDirectory, String modelFile, boolean verify)
+			throws IOException, InterruptedException {
+		Files.createDirectories(workDirectory);
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		System.out.println("Starting " + workers + " workers...");
+		long start = System.nanoTime();
+		ArrayList<Process> processes = new ArrayList<>();
+		ArrayList<Path> partialFiles = new ArrayList<>();
+		for (int worker = 0; worker < workers; worker++) {
+			Path partialFile = workDirectory.resolve("counts-" + worker + ".bin");
+			partialFiles.add(partialFile);
+			processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ShardedTraining.class.getName(),
+					"worker", input, Integer.toString(worker), Integer.toString(workers), partialFile.toString())
+					.inheritIO().start());
+		}
+		for (int worker = 0; worker < workers; worker++) {
+			int exitCode = processes.get(worker).waitFor();
+			if (exitCode != 0) {
+				System.out.println("Worker " + (worker + 1) + " failed with exit code " + exitCode + ".");
+				System.exit(1);
+			}
+		}
+		System.out.println("Starting " + workers + " workers DONE.");
+		// Merge the partial counts in the order of the documents.
+		System.out.println("Merging partial counts...");
+		TrainingCounts counts = new TrainingCounts();
+		for (Path partialFile : partialFiles) {
+			counts.merge(TrainingCounts.read(partialFile));
+		}
+		Set<String> distinctiveTerms = counts.selectDistinctiveTerms(MutualInformation.TERMS_PER_TOPIC);
+		DenseTopicModel model = counts.compile();
+		DenseTopicModel mutualInformationModel = counts.compile(distinctiveTerms);
+		System.out.println("Merging partial counts DONE. " + counts.getDocumentCount() + " training stories, "
+				+ counts.getDictionary().size() + " terms, " + distinctiveTerms.size() + " distinctive terms, "
+				+ (System.nanoTime() - start)/1000000 + " ms since the workers started.");
+		if (modelFile != null && !modelFile.isEmpty()) {
+			counts.compileOffHeap(distinctiveTerms, Paths.get(modelFile));
+			System.out.println("Wrote the mutual information model to " + modelFile + ".");
+		}
+		if (verify) {
+			System.out.println("Verifying with one process...");
+			StoryTokenizer.setStopWords(Main.readStopWords());
+			TrainingCounts expected = count(Main.findDocuments(input));
+			Set<String> expectedTerms = expected.selectDistinctiveTerms(MutualInformation.TERMS_PER_TOPIC);
+			boolean same = expected.getDocumentCount() == counts.getDocumentCount()
+					&& expected.getDictionary().equals(counts.getDictionary())
+					&& expectedTerms.equals(distinctiveTerms)
+					&& sameModels(expected.compile(), model, expected.getDictionary())
+					&& sameModels(expected.compile(expectedTerms), mutualInformationModel, expected.getDictionary());
+			System.out.println("Verifying with one process DONE. The models are " + (same ? "the same." : "DIFFERENT."));
+		}
+	}
+
+	/**
+	 * Returns the consecutive range of the files which the worker counts.
+	 */
+	private static List<Path> getShard(ArrayList<Path> files, int worker, int workers) {
+		return files.subList(files.size() * worker / workers, files.size() * (worker + 1) / workers);
+	}
+
+	/**
+	 * Reads, tokenizes and counts the training stories of the files in order.
+	 * Fails if a file cannot be read, so that no partial counts are merged as complete ones.
+	 */
+	private static TrainingCounts count(List<Path> files) throws IOException {
+		TrainingCounts counts = new TrainingCounts();
+		for (Path file : files) {
+			ArrayList<NewsStory> stories = StoryExtractor.getStoriesFromDocument(file.toString());
+			if (stories == null) {
+				throw new IOException("Failed to read document " + file);
+			}
+			for (NewsStory story : StoryTokenizer.tokenizeStories(stories)) {
+				counts.add(story);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns true if the models have exactly the same probabilities for the topics and the given terms.
+	 */
+	private static boolean sameModels(TopicModel first, TopicModel second, ArrayList<String> terms) {
+		for (int topic = 0; topic < Constants.topicsSet.size(); topic++) {
+			if (first.getTopicProbability(topic) != second.getTopicProbability(topic)) {
+				return false;
+			}
+			for (String term : terms) {
+				int firstID = first.getTermID(term);
+				int secondID = second.getTermID(term);
+				if ((firstID < 0) != (secondID < 0) || (firstID >= 0
+						&& first.getTermProbability(topic, firstID) != second.getTermProbability(topic, secondID))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,106 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import main.collections.CountMinSketch;
+import main.collections.IntDoubleHashMap;
+import main.collections.SpaceSaving;
+
+/**
+ * Approximate mutual information for corpora whose exact per-topic document frequencies do not fit in memory.
+ * Training stories are streamed through once. Document frequencies of each topic are kept in a Count-Min sketch,
+ * and the terms with the highest overall document frequencies are kept as candidates in a Space-Saving summary.
+ * Mutual information of the candidates is calculated from the sketch estimates.
+ */
+public class SketchedMutualInformation {
+	private final CountMinSketch[] documentFrequencies;
+	private final SpaceSaving<String> candidates;
+	private final int[] documentCounts;
+
+	/**
+	 * Creates sketches whose estimates are at most epsilon * (total document frequency of the topic)
+	 * too high with probability 1 - delta, keeping the given number of candidate terms.
+	 */
+	public SketchedMutualInformation(double epsilon, double delta, int candidateCount) {
+		documentFrequencies = new CountMinSketch[Constants.topicsSet.size()];
+		for (int topic = 0; topic < documentFrequencies.length; topic++) {
+			documentFrequencies[topic] = new CountMinSketch(epsilon, delta);
+		}
+		candidates = new SpaceSaving<>(candidateCount);
+		documentCounts = new int[documentFrequencies.length];
+	}
+
+	/**
+	 * Adds the terms of the story to the statistics, if it is a training story.
+	 */
+	public void add(NewsStory story) {
+		// Only use training documents.
+		if (!story.lewissplit.equals("TRAIN")) {
+			return;
+		}
+		int topic = Constants.topicsSet.indexOf(story.topic);
+		documentCounts[topic]++;
+		for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+			String term = story.termCounts.keyAt(slot);
+			documentFrequencies[topic].add(term, 1);
+			candidates.offer(term, 1);
+		}
+	}
+
+	/**
+	 * Returns the candidate terms with the 50 highest estimated mutual information values of each topic.
+	 */
+	public Set<String> selectTerms() {
+		ArrayList<String> terms = candidates.getKeys();
+		int totalDocCount = 0;
+		for (int count : documentCounts) {
+			totalDocCount += count;
+		}
+		Set<String> selected = new HashSet<>();
+		for (int topic = 0; topic < documentCounts.length; topic++) {
+			IntDoubleHashMap mutualInfos = new IntDoubleHashMap();
+			for (int term = 0; term < terms.size(); term++) {
+				// The stories containing this term and are from this topic.
+				int yTermYTopic = estimate(topic, terms.get(term));
+				if (yTermYTopic == 0) {
+					yTermYTopic = 1;
+				}
+				// The stories containing this term and are not from this topic.
+				int yTermNTopic = 1;
+				for (int otherTopic = 0; otherTopic < documentCounts.length; otherTopic++) {
+					if (otherTopic != topic) {
+						yTermNTopic += estimate(otherTopic, terms.get(term));
+					}
+				}
+				double mutualInformation = MutualInformation.calculate(yTermYTopic, yTermNTopic,
+						documentCounts[topic], totalDocCount);
+				MutualInformation.keepHighest(mutualInfos, term, mutualInformation, MutualInformation.TERMS_PER_TOPIC);
+			}
+			for (int slot = mutualInfos.nextSlot(-1); slot >= 0; slot = mutualInfos.nextSlot(slot)) {
+				selected.add(terms.get(mutualInfos.keyAt(slot)));
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Returns the number of bytes used by the sketches and the candidate summary.
+	 */
+	public long getMemoryBytes() {
+		long bytes = candidates.getMemoryBytes();
+		for (CountMinSketch sketch : documentFrequencies) {
+			bytes += sketch.getMemoryBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the estimated document frequency of the term in the topic.
+	 * Estimates can only be too high, so they are capped by the number of documents of the topic.
+	 */
+	private int estimate(int topic, String term) {
+		return Math.min(documentFrequencies[topic].estimate(term), documentCounts[topic]);
+	}
+}
@@ -0,0 +1,107 @@
+package main;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+/**
+ * Checks that the allocation-free entry points of PorterStemmer give the same stems as the original
+ * add()/stem()/toString() path. The words are the distinct words of the titles and bodies of the
+ * documents, before stop word removal, and the lines of an optional word list file. Each word is also
+ * checked repeated three times, so that words longer than the initial buffer of the stemmer are covered.
+ * The stemmer under test is reused for every word, and the words are stemmed at an offset in a larger
+ * buffer, so that leftovers of a previous word or of the surrounding chars would show up.
+ *
+ * Usage: java -cp out main.StemmerConformance [directory|glob] [--words=file]
+ * Prints every mismatch and exits with status 1 if there is any.
+ */
+public class StemmerConformance {
+	private final PorterStemmer reference = new PorterStemmer();
+	private final PorterStemmer stemmer = new PorterStemmer();
+	private char[] buffer = new char[64];
+	private int mismatches;
+
+	public static void main(String[] args) throws IOException {
+		String input = (args.length > 0 && !args[0].startsWith("--") ? args[0] : "Dataset");
+		String wordFile = Main.getOption(args, "words");
+		TreeSet<String> words = new TreeSet<>();
+		System.out.println("Collecting words...");
+		for (ArrayList<NewsStory> stories : Main.readStoriesFromDocuments(input)) {
+			for (NewsStory story : stories) {
+				words.addAll(StoryTokenizer.tokenizeString(story.title));
+				words.addAll(StoryTokenizer.tokenizeString(story.body));
+			}
+		}
+		if (wordFile != null && !wordFile.isEmpty()) {
+			for (String line : Files.readAllLines(Paths.get(wordFile), StandardCharsets.UTF_8)) {
+				if (!line.trim().isEmpty()) {
+					words.add(line.trim());
+				}
+			}
+		}
+		System.out.println("Collecting words DONE.");
+		StemmerConformance conformance = new StemmerConformance();
+		for (String word : words) {
+			conformance.check(word);
+			conformance.check(word + word + word);
+		}
+		System.out.println("Checked " + 2 * words.size() + " words, " + conformance.mismatches + " mismatches.");
+		if (conformance.mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Stems the word with every entry point and counts a mismatch if one differs from the original path.
+	 */
+	private void check(String word) {
+		for (int c = 0; c < word.length(); c++) {
+			reference.add(word.charAt(c));
+		}
+		reference.stem();
+		String expected = reference.toString();
+
+		// Stem in place at an offset, between two sentinel chars.
+		int offset = 3;
+		if (buffer.length < word.length() + 2 * offset) {
+			buffer = new char[2 * (word.length() + 2 * offset)];
+		}
+		buffer[offset - 1] = '#';
+		word.getChars(0, word.length(), buffer, offset);
+		buffer[offset + word.length()] = '#';
+		int length = stemmer.stem(buffer, offset, word.length());
+		compare(word, "stem(char[], int, int)", expected, new String(buffer, offset, length));
+		if (buffer[offset - 1] != '#' || buffer[offset + word.length()] != '#') {
+			report(word, "stem(char[], int, int)", "the chars around the word were changed");
+		}
+
+		length = stemmer.stem("#" + word + "#", 1, word.length() + 1);
+		compare(word, "stem(CharSequence, int, int)", expected, new String(stemmer.getResultBuffer(), 0, length));
+
+		word.getChars(0, word.length(), buffer, offset);
+		String[] result = new String[1];
+		stemmer.stem(buffer, offset, word.length(), (chars, resultLength) -> {
+			result[0] = new String(chars, 0, resultLength);
+			return resultLength;
+		});
+		compare(word, "stem(char[], int, int, Callback)", expected, result[0]);
+		if (!new String(buffer, offset, word.length()).equals(word)) {
+			report(word, "stem(char[], int, int, Callback)", "the word was changed");
+		}
+	}
+
+	private void compare(String word, String entryPoint, String expected, String actual) {
+		if (!expected.equals(actual)) {
+			report(word, entryPoint, "gave " + actual + " instead of " + expected);
+		}
+	}
+
+	private void report(String word, String entryPoint, String problem) {
+		mismatches++;
+		System.out.println("Mismatch for " + word + ": " + entryPoint + " " + problem + ".");
+	}
+}
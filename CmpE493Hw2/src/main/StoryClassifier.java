@@ -2,23 +2,86 @@ package main;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import main.collections.ObjectIntHashMap;
 
 public class StoryClassifier {
-	static HashMap<String, Double> topicProbabilities;
-	static HashMap<String, HashMap<String, Double>> termProbabilities;
-	
-	public static void setTermProbabilities(HashMap<String, HashMap<String, Double>> termProbs) {
-		termProbabilities = termProbs;
+	// The model used for classification, and an optional shadow model compared with it.
+	// Readers take one snapshot and use it until they are done, so publishing never blocks them.
+	private static final AtomicReference<ModelSnapshot> liveModel = new AtomicReference<>();
+	private static final AtomicReference<ModelSnapshot> shadowModel = new AtomicReference<>();
+	private static final AtomicLong versions = new AtomicLong();
+	private static final ClassifierMetrics metrics = new ClassifierMetrics();
+
+	/**
+	 * Replaces the live model with the given one and returns its snapshot.
+	 * Classifications which already started keep using the previous snapshot.
+	 */
+	public static ModelSnapshot publishModel(TopicModel model) {
+		ModelSnapshot snapshot = new ModelSnapshot(model, versions.incrementAndGet());
+		liveModel.set(snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Sets the shadow model which the test documents are also classified with, or removes it if null.
+	 */
+	public static ModelSnapshot publishShadowModel(TopicModel model) {
+		ModelSnapshot snapshot = (model == null ? null : new ModelSnapshot(model, versions.incrementAndGet()));
+		shadowModel.set(snapshot);
+		return snapshot;
 	}
 
-	public static void setTopicProbabilities(HashMap<String, Double> topicProbs) {
-		topicProbabilities = topicProbs;
+	public static ModelSnapshot getLiveModel() {
+		return liveModel.get();
+	}
+
+	public static ModelSnapshot getShadowModel() {
+		return shadowModel.get();
 	}
 
 	/**
-	 * Classifies test documents in the given document set, using term and topic probabilities.
+	 * Returns the metrics of the tokenizer and the classifier.
+	 */
+	public static ClassifierMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Classifies test documents in the given document set, using the live model.
+	 * If there is a shadow model, also compares its decisions with the live model.
 	 */
 	public static void classifyTestDocuments(ArrayList<ArrayList<NewsStory>> documents) {
+		ModelSnapshot live = liveModel.get();
+		ModelSnapshot shadow = shadowModel.get();
+		classifyTestDocuments(documents, live, true);
+		if (shadow != null) {
+			System.out.println("Comparing live model version " + live.getVersion()
+					+ " with shadow model version " + shadow.getVersion() + "...");
+			compareModels(documents, live.getModel(), shadow.getModel());
+		}
+	}
+
+	/**
+	 * Returns the index of the topic with the maximum probability for the story, using the live model.
+	 */
+	public static int classify(NewsStory story) {
+		return classifyWithLiveModel(story.termCounts, liveModel.get().getModel());
+	}
+
+	/**
+	 * Classifies test documents in the given document set, using the model of the given snapshot.
+	 * Returns the ratio of correctly classified documents.
+	 * The decisions are added to the metrics under the version of the snapshot, and if the snapshot
+	 * was taken as the live model, its scoring times too. The snapshot is passed in rather than looked up,
+	 * so that a model published meanwhile does not change which version the decisions are recorded for.
+	 */
+	public static double classifyTestDocuments(ArrayList<ArrayList<NewsStory>> documents, ModelSnapshot snapshot,
+			boolean isLive) {
+		TopicModel model = snapshot.getModel();
+		long version = snapshot.getVersion();
 		// Keep track of correctly/falsely classified documents.
 		HashMap<String, Integer> precCorrect = new HashMap<>();
 		HashMap<String, Integer> precFalse = new HashMap<>();
@@ -39,22 +102,16 @@ public class StoryClassifier {
 					continue;
 				}
 				// Find the topic with maximum probability.
-				String currentType = Constants.topicsSet.get(0);
-				double currentProb = calculateProbForTopic(Constants.topicsSet.get(0), story);
-				for (int i = 1; i < 5; i++) {
-					double newProb = calculateProbForTopic(Constants.topicsSet.get(i), story);
-					if (newProb > currentProb) {
-						currentProb = newProb;
-						currentType = Constants.topicsSet.get(i);
-					}
-				}
+				int classified = (isLive ? classifyWithLiveModel(story.termCounts, model) : classify(story, model));
+				String currentType = Constants.topicsSet.get(classified);
+				metrics.recordDecision(version, Constants.topicsSet.indexOf(story.topic), classified);
 				// Update the statistics variables.
 				if (story.topic.equals(currentType)) {
 					correct++;
 					precCorrect.put(currentType, precCorrect.get(currentType) + 1);
 				} else {
 					precFalse.put(currentType, precFalse.get(currentType) + 1);
-					recFalse.put(story.topic, precFalse.get(story.topic) + 1);
+					recFalse.put(story.topic, recFalse.get(story.topic) + 1);
 				}
 				total++;
 			}
@@ -72,16 +129,100 @@ public class StoryClassifier {
 			System.out.println("Recall for topic " + top + ": " +(precCorrect.get(top)/(double)(precCorrect.get(top) + recFalse.get(top))));
 		}
 		System.out.println();
+		return correct/(double)total;
+	}
+
+	/**
+	 * Classifies the test documents with both models and prints
+	 * their accuracies, weight sizes, scoring times per story and how often they agree.
+	 */
+	public static void compareModels(ArrayList<ArrayList<NewsStory>> documents, TopicModel reference, TopicModel candidate) {
+		int referenceCorrect = 0;
+		int candidateCorrect = 0;
+		int agreed = 0;
+		int total = 0;
+		long referenceNanos = 0;
+		long candidateNanos = 0;
+		for (ArrayList<NewsStory> doc : documents) {
+			for (NewsStory story : doc) {
+				// Only consider test documents.
+				if (!story.lewissplit.equals("TEST")) {
+					continue;
+				}
+				long start = System.nanoTime();
+				int referenceTopic = classify(story, reference);
+				long middle = System.nanoTime();
+				int candidateTopic = classify(story, candidate);
+				candidateNanos += System.nanoTime() - middle;
+				referenceNanos += middle - start;
+				if (story.topic.equals(Constants.topicsSet.get(referenceTopic))) {
+					referenceCorrect++;
+				}
+				if (story.topic.equals(Constants.topicsSet.get(candidateTopic))) {
+					candidateCorrect++;
+				}
+				if (referenceTopic == candidateTopic) {
+					agreed++;
+				}
+				total++;
+			}
+		}
+		System.out.println();
+		System.out.println("Reference model: " + referenceCorrect + "/" + total + "=" + referenceCorrect/(double)total
+				+ ", weights: " + reference.getWeightBytes() + " bytes, scoring: "
+				+ referenceNanos/1000.0/Math.max(1, total) + " us/story");
+		System.out.println("Compared model: " + candidateCorrect + "/" + total + "=" + candidateCorrect/(double)total
+				+ ", weights: " + candidate.getWeightBytes() + " bytes, scoring: "
+				+ candidateNanos/1000.0/Math.max(1, total) + " us/story");
+		System.out.println("Accuracy delta: " + (candidateCorrect - referenceCorrect)/(double)total);
+		System.out.println("Same decision: " + agreed + "/" + total + "=" + agreed/(double)total);
+		System.out.println();
+	}
+
+	/**
+	 * Returns the index of the topic with the maximum probability for the story.
+	 */
+	public static int classify(NewsStory story, TopicModel model) {
+		return classify(story.termCounts, model);
+	}
+
+	/**
+	 * Returns the index of the topic with the maximum probability for the given term counts.
+	 * Nothing is added to the metrics, so comparisons and evaluations can use it freely.
+	 */
+	public static int classify(ObjectIntHashMap<String> termCounts, TopicModel model) {
+		int currentType = 0;
+		double currentProb = calculateProbForTopic(0, termCounts, model);
+		for (int i = 1; i < Constants.topicsSet.size(); i++) {
+			double newProb = calculateProbForTopic(i, termCounts, model);
+			if (newProb > currentProb) {
+				currentProb = newProb;
+				currentType = i;
+			}
+		}
+		return currentType;
+	}
+
+	/**
+	 * Classifies the term counts with the model, which is expected to be the live model,
+	 * and adds the scoring time and the classified story to the metrics.
+	 */
+	static int classifyWithLiveModel(ObjectIntHashMap<String> termCounts, TopicModel model) {
+		long start = System.nanoTime();
+		int topic = classify(termCounts, model);
+		metrics.recordScoring(System.nanoTime() - start);
+		return topic;
 	}
 
 	/**
 	 * Sums the log probabilities of topic and terms in the story.
 	 */
-	private static double calculateProbForTopic(String topic, NewsStory story) {
-		double result = topicProbabilities.get(topic);
-		for (String term : story.termCounts.keySet()) {
-			if (termProbabilities.get(topic).containsKey(term)) {
-				result += termProbabilities.get(topic).get(term) * story.termCounts.get(term);
+	private static double calculateProbForTopic(int topic, ObjectIntHashMap<String> termCounts, TopicModel model) {
+		double result = model.getTopicProbability(topic);
+		for (int slot = termCounts.nextSlot(-1); slot >= 0; slot = termCounts.nextSlot(slot)) {
+			int termID = model.getTermID(termCounts.keyAt(slot));
+			if (termID >= 0) {
+				result += model.getTermProbability(topic, termID) * termCounts.valueAt(slot);
 			}
 		}
 		return result;
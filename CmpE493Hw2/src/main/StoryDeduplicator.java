@@ -0,0 +1,141 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Removes near-duplicate training stories, such as corrections and repeated stories, before counting.
+ * Each story gets a MinHash signature of the shingles (consecutive stemmed tokens) of its title and body.
+ * Signatures are split into bands and stories sharing a band are compared, so each story is only
+ * compared with its likely duplicates instead of every other story.
+ */
+public class StoryDeduplicator {
+	private static final int SHINGLE_SIZE = 3;
+	private static final int BANDS = 20;
+	private static final int ROWS = 5;
+	private final double threshold;
+	private final int[] seeds = new int[BANDS * ROWS];
+	// Kept stories of each band bucket, by the hash of their band.
+	private final ArrayList<HashMap<Long, ArrayList<int[]>>> buckets = new ArrayList<>();
+
+	/**
+	 * Creates a deduplicator which removes stories whose estimated Jaccard similarity
+	 * with an earlier story is at least the threshold.
+	 */
+	public StoryDeduplicator(double threshold) {
+		this.threshold = threshold;
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = mix(0x9E3779B9 * (i + 1));
+		}
+		for (int band = 0; band < BANDS; band++) {
+			buckets.add(new HashMap<Long, ArrayList<int[]>>());
+		}
+	}
+
+	/**
+	 * Removes the training stories which are near-duplicates of an earlier training story
+	 * from the documents. Test stories and stories without tokens are always kept, as every story
+	 * without tokens would have the same signature. Returns the number of removed stories.
+	 */
+	public int removeDuplicates(ArrayList<ArrayList<NewsStory>> documents) {
+		int removed = 0;
+		for (ArrayList<NewsStory> doc : documents) {
+			ArrayList<NewsStory> kept = new ArrayList<>(doc.size());
+			for (NewsStory story : doc) {
+				if (story.lewissplit.equals("TRAIN") && hasTokens(story) && isDuplicate(signature(story))) {
+					removed++;
+				} else {
+					kept.add(story);
+				}
+			}
+			doc.clear();
+			doc.addAll(kept);
+		}
+		return removed;
+	}
+
+	private static boolean hasTokens(NewsStory story) {
+		return !story.titleTokens.isEmpty() || !story.bodyTokens.isEmpty();
+	}
+
+	/**
+	 * Returns true if a story in one of the band buckets of the signature is similar enough.
+	 * Otherwise adds the signature to its buckets.
+	 */
+	private boolean isDuplicate(int[] signature) {
+		long[] bandKeys = new long[BANDS];
+		for (int band = 0; band < BANDS; band++) {
+			long key = band;
+			for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+				key = key * 0x100000001B3L + signature[row];
+			}
+			bandKeys[band] = key;
+			ArrayList<int[]> candidates = buckets.get(band).get(key);
+			if (candidates == null) {
+				continue;
+			}
+			for (int[] candidate : candidates) {
+				if (similarity(signature, candidate) >= threshold) {
+					return true;
+				}
+			}
+		}
+		for (int band = 0; band < BANDS; band++) {
+			ArrayList<int[]> candidates = buckets.get(band).get(bandKeys[band]);
+			if (candidates == null) {
+				candidates = new ArrayList<>(1);
+				buckets.get(band).put(bandKeys[band], candidates);
+			}
+			candidates.add(signature);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the MinHash signature of the shingles of the story.
+	 */
+	private int[] signature(NewsStory story) {
+		int[] signature = new int[seeds.length];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		ArrayList<String> tokens = new ArrayList<>(story.titleTokens);
+		tokens.addAll(story.bodyTokens);
+		// Short stories are one shingle.
+		int shingleCount = Math.max(1, tokens.size() - SHINGLE_SIZE + 1);
+		for (int start = 0; start < shingleCount; start++) {
+			int shingle = 0;
+			for (int i = start; i < Math.min(start + SHINGLE_SIZE, tokens.size()); i++) {
+				shingle = 31 * shingle + tokens.get(i).hashCode();
+			}
+			for (int i = 0; i < seeds.length; i++) {
+				signature[i] = Math.min(signature[i], mix(shingle ^ seeds[i]));
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * Returns the fraction of equal values in two signatures, which estimates the Jaccard similarity.
+	 */
+	private static double similarity(int[] a, int[] b) {
+		int equal = 0;
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] == b[i]) {
+				equal++;
+			}
+		}
+		return equal/(double)a.length;
+	}
+
+	/**
+	 * MurmurHash3 finalizer, used as a family of hash functions with different seeds.
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -1,10 +1,15 @@
 package main;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,20 +18,46 @@ import java.util.regex.Pattern;
  * NewsStory array with body and title fields.
  */
 public class StoryExtractor {
+	// Size of the buffer used while decompressing gzip files.
+	private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
 	/**
 	 * Given the file name, extracts the stories using body and title tags
 	 * within text tags. Returns an array of NewsStory objects.
+	 * Files ending with .gz are decompressed while they are read.
 	 */
 	public static ArrayList<NewsStory> getStoriesFromDocument(String fileName) {
 		// Tokenize by tags and lines first.
 		ArrayList<String> tagTokens = null;
-		try {
-			tagTokens = tokenizeByTagsAndStrings(fileName);
+		try (BufferedReader br = openDocument(fileName)) {
+			tagTokens = tokenizeByTagsAndStrings(br);
 		} catch (IOException e) {
 			System.out.println("Failed to tokenize document " + fileName + " by tags and strings.");
 			e.printStackTrace();
 			return null;
 		}
+		return extractStories(tagTokens);
+	}
+
+	/**
+	 * Given the text of one or more REUTERS records, extracts the stories like getStoriesFromDocument.
+	 */
+	public static ArrayList<NewsStory> getStoriesFromText(String text) {
+		ArrayList<String> tagTokens = null;
+		try (BufferedReader br = new BufferedReader(new StringReader(text))) {
+			tagTokens = tokenizeByTagsAndStrings(br);
+		} catch (IOException e) {
+			System.out.println("Failed to tokenize text by tags and strings.");
+			e.printStackTrace();
+			return null;
+		}
+		return extractStories(tagTokens);
+	}
+
+	/**
+	 * Extracts the stories from the tag tokens of a document.
+	 */
+	private static ArrayList<NewsStory> extractStories(ArrayList<String> tagTokens) {
 		// Organize tokens to merge non-token entries.
 		tagTokens = organizeTagsAndStrings(tagTokens);
 		// Extract texts, ids, topics of stories.
@@ -163,7 +194,7 @@ public class StoryExtractor {
 	}
 	
 	/**
-	 * Reads the file line by line and returns a String array.
+	 * Reads the document line by line and returns a String array.
 	 * The returned array will have elements as follows:
 	 * - <TAG> and </TAG> types.
 	 * - Substrings of a line:
@@ -171,36 +202,50 @@ public class StoryExtractor {
 	 *   - Part between two tags
 	 *   - Part after last tag until the end of line.
 	 */
-	private static ArrayList<String> tokenizeByTagsAndStrings(String fileName) throws FileNotFoundException, IOException {
+	private static ArrayList<String> tokenizeByTagsAndStrings(BufferedReader br) throws IOException {
 		ArrayList<String> tokens = new ArrayList<>();
 		// Ready pattern to find tags.
 		Pattern tagPattern = Pattern.compile("<(.*?)>");
 		// Process document line by line.
-		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-			String line;
-		    while ((line = br.readLine()) != null) {
-				// Get first match.
-				Matcher m = tagPattern.matcher(line);
-				while (m.find()) {
-					// If there is text before match, add as another token.
-					if (m.start() != 0) {
-						tokens.add(line.substring(0, m.start()));
-					}
-					// Add the match.
-					tokens.add(m.group());
-					// Update the line.
-					line = line.substring(m.end());
-					m = tagPattern.matcher(line);
-				}
-				// Add the remaining text as token.
-				if (!line.isEmpty()) {
-					tokens.add(line);	
+		String line;
+	    while ((line = br.readLine()) != null) {
+			// Get first match.
+			Matcher m = tagPattern.matcher(line);
+			while (m.find()) {
+				// If there is text before match, add as another token.
+				if (m.start() != 0) {
+					tokens.add(line.substring(0, m.start()));
 				}
-		    }
-		}
+				// Add the match.
+				tokens.add(m.group());
+				// Update the line.
+				line = line.substring(m.end());
+				m = tagPattern.matcher(line);
+			}
+			// Add the remaining text as token.
+			if (!line.isEmpty()) {
+				tokens.add(line);	
+			}
+	    }
 		return tokens;
 	}
 	
+	/**
+	 * Opens a reader for the document. Decompresses the document if its name ends with .gz.
+	 */
+	private static BufferedReader openDocument(String fileName) throws FileNotFoundException, IOException {
+		InputStream in = new FileInputStream(fileName);
+		if (fileName.endsWith(".gz")) {
+			try {
+				in = new GZIPInputStream(in, GZIP_BUFFER_SIZE);
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+		return new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()));
+	}
+
 	/**
 	 * Takes in an array list of strings with tags and non-tags.
 	 * Merges every non-tag entry into one element.
@@ -0,0 +1,304 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Index of the REUTERS records in the .sgm files, so that single stories can be read by their NEWID
+ * without extracting whole documents. For every record the index keeps its file, byte offset and length,
+ * LEWISSPLIT and topic, sorted by NEWID in a compact side file.
+ *
+ * The index file contains a magic number, the file names, the record count and then 16 bytes for each
+ * record: NEWID (int), file (short), offset (int), length (int), LEWISSPLIT (byte) and topic (byte).
+ * LEWISSPLIT and topic are indexes in LEWIS_SPLITS and Constants.topicsSet, or -1.
+ *
+ * Usage:
+ *   java -cp out main.StoryIndex build directory|glob indexFile
+ *   java -cp out main.StoryIndex lookup indexFile [--model=file] newid...
+ */
+public class StoryIndex {
+	private static final int MAGIC = 0x5349_4458;
+	private static final String[] LEWIS_SPLITS = { "TRAIN", "TEST", "NOT-USED" };
+	private static final byte[] RECORD_START = "<REUTERS".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] RECORD_END = "</REUTERS>".getBytes(StandardCharsets.US_ASCII);
+	private final String[] files;
+	private final int[] ids;
+	private final short[] fileIndexes;
+	private final int[] offsets;
+	private final int[] lengths;
+	private final byte[] lewisSplits;
+	private final byte[] topics;
+
+	private StoryIndex(String[] files, int recordCount) {
+		this.files = files;
+		ids = new int[recordCount];
+		fileIndexes = new short[recordCount];
+		offsets = new int[recordCount];
+		lengths = new int[recordCount];
+		lewisSplits = new byte[recordCount];
+		topics = new byte[recordCount];
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 3 && args[0].equals("build")) {
+			StoryIndex index = build(args[1]);
+			index.write(Paths.get(args[2]));
+			System.out.println("Indexed " + index.size() + " stories of " + index.files.length + " files.");
+		} else if (args.length >= 3 && args[0].equals("lookup")) {
+			StoryIndex index = load(Paths.get(args[1]));
+			String modelFile = Main.getOption(args, "model");
+			TopicModel model = (modelFile == null || modelFile.isEmpty() ? null : OffHeapTopicModel.load(Paths.get(modelFile)));
+			if (model != null) {
+				StoryTokenizer.setStopWords(Main.readStopWords());
+			}
+			for (int i = 2; i < args.length; i++) {
+				if (!args[i].startsWith("--")) {
+					printStory(index, Integer.parseInt(args[i]), model);
+				}
+			}
+		} else {
+			System.out.println("Usage: StoryIndex build directory|glob indexFile");
+			System.out.println("       StoryIndex lookup indexFile [--model=file] newid...");
+		}
+	}
+
+	/**
+	 * Indexes the records of the .sgm files of the input, which is a directory or glob as in
+	 * Main.findDocuments. Compressed files cannot be read at an offset, so they are skipped.
+	 */
+	public static StoryIndex build(String input) throws IOException {
+		ArrayList<String> fileNames = new ArrayList<>();
+		ArrayList<long[]> records = new ArrayList<>();
+		for (Path file : Main.findDocuments(input)) {
+			if (file.toString().endsWith(".gz")) {
+				System.out.println("Skipping compressed document " + file);
+				continue;
+			}
+			int fileIndex = fileNames.size();
+			fileNames.add(file.toString());
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				int start = indexOf(buffer, RECORD_START, 0);
+				while (start >= 0) {
+					int end = indexOf(buffer, RECORD_END, start);
+					if (end < 0) {
+						break;
+					}
+					end += RECORD_END.length;
+					long[] record = parseRecord(buffer, fileIndex, start, end);
+					if (record != null) {
+						records.add(record);
+					} else {
+						System.out.println("Skipping record without a valid NEWID at offset " + start + " of " + file);
+					}
+					start = indexOf(buffer, RECORD_START, end);
+				}
+			}
+		}
+		// Sort the records by NEWID, which is the first field of each record.
+		long[][] sorted = records.toArray(new long[0][]);
+		Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+		StoryIndex index = new StoryIndex(fileNames.toArray(new String[0]), sorted.length);
+		for (int i = 0; i < sorted.length; i++) {
+			index.ids[i] = (int) sorted[i][0];
+			index.fileIndexes[i] = (short) sorted[i][1];
+			index.offsets[i] = (int) sorted[i][2];
+			index.lengths[i] = (int) sorted[i][3];
+			index.lewisSplits[i] = (byte) sorted[i][4];
+			index.topics[i] = (byte) sorted[i][5];
+		}
+		return index;
+	}
+
+	/**
+	 * Reads an index file written by write.
+	 */
+	public static StoryIndex load(Path indexFile) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a story index: " + indexFile);
+			}
+			String[] files = new String[in.readInt()];
+			for (int i = 0; i < files.length; i++) {
+				files[i] = in.readUTF();
+			}
+			StoryIndex index = new StoryIndex(files, in.readInt());
+			for (int i = 0; i < index.ids.length; i++) {
+				index.ids[i] = in.readInt();
+				index.fileIndexes[i] = in.readShort();
+				index.offsets[i] = in.readInt();
+				index.lengths[i] = in.readInt();
+				index.lewisSplits[i] = in.readByte();
+				index.topics[i] = in.readByte();
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Writes the index to the given file.
+	 */
+	public void write(Path indexFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(files.length);
+			for (String file : files) {
+				out.writeUTF(file);
+			}
+			out.writeInt(ids.length);
+			for (int i = 0; i < ids.length; i++) {
+				out.writeInt(ids[i]);
+				out.writeShort(fileIndexes[i]);
+				out.writeInt(offsets[i]);
+				out.writeInt(lengths[i]);
+				out.writeByte(lewisSplits[i]);
+				out.writeByte(topics[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of indexed stories.
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the LEWISSPLIT of the story, or null if the story is not indexed or its split is unknown.
+	 */
+	public String getLewisSplit(int newId) {
+		int record = Arrays.binarySearch(ids, newId);
+		return (record < 0 || lewisSplits[record] < 0 ? null : LEWIS_SPLITS[lewisSplits[record]]);
+	}
+
+	/**
+	 * Returns the topic of the story, or null if the story is not indexed or does not have exactly one known topic.
+	 */
+	public String getTopic(int newId) {
+		int record = Arrays.binarySearch(ids, newId);
+		return (record < 0 || topics[record] < 0 ? null : Constants.topicsSet.get(topics[record]));
+	}
+
+	/**
+	 * Maps the record of the story and extracts it, or returns null if the story is not indexed
+	 * or has no text.
+	 */
+	public NewsStory getStory(int newId) throws IOException {
+		int record = Arrays.binarySearch(ids, newId);
+		if (record < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[lengths[record]];
+		try (FileChannel channel = FileChannel.open(Paths.get(files[fileIndexes[record]]), StandardOpenOption.READ)) {
+			channel.map(FileChannel.MapMode.READ_ONLY, offsets[record], lengths[record]).get(bytes);
+		}
+		// Decode like the documents are read by StoryExtractor.
+		ArrayList<NewsStory> stories = StoryExtractor.getStoriesFromText(new String(bytes, Charset.defaultCharset()));
+		return (stories == null || stories.isEmpty() ? null : stories.get(0));
+	}
+
+	/**
+	 * Prints the indexed fields and the title of the story, and classifies it if a model is given.
+	 */
+	private static void printStory(StoryIndex index, int newId, TopicModel model) throws IOException {
+		long start = System.nanoTime();
+		NewsStory story = index.getStory(newId);
+		if (story == null) {
+			System.out.println(newId + ": not found");
+			return;
+		}
+		String result = newId + ": " + index.getLewisSplit(newId) + ", topic " + index.getTopic(newId)
+				+ ", title" + story.title;
+		if (model != null) {
+			// Count the terms as StoryTokenizer does, without its topic restriction.
+			for (String token : StoryTokenizer.tokenizeAndStem(story.title + " " + story.body)) {
+				story.termCounts.increment(token);
+			}
+			result += ", classified as " + Constants.topicsSet.get(StoryClassifier.classify(story, model));
+		}
+		System.out.println(result + " (" + (System.nanoTime() - start)/1000 + " us)");
+	}
+
+	/**
+	 * Returns the record as {NEWID, file, offset, length, LEWISSPLIT, topic},
+	 * or null if its NEWID is missing or not a number.
+	 */
+	private static long[] parseRecord(ByteBuffer buffer, int fileIndex, int start, int end) {
+		int tagEnd = indexOf(buffer, new byte[] { '>' }, start);
+		String tag = decode(buffer, start, tagEnd);
+		int id;
+		try {
+			id = Integer.parseInt(attribute(tag, "NEWID"));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		int lewisSplit = Arrays.asList(LEWIS_SPLITS).indexOf(attribute(tag, "LEWISSPLIT"));
+		// Only stories with one proper topic have a topic, as in StoryExtractor.
+		int topic = -1;
+		int topicsStart = indexOf(buffer, "<TOPICS>".getBytes(StandardCharsets.US_ASCII), start);
+		int topicsEnd = indexOf(buffer, "</TOPICS>".getBytes(StandardCharsets.US_ASCII), start);
+		if (topicsStart >= 0 && topicsEnd >= 0 && topicsEnd < end) {
+			int properTopics = 0;
+			for (String d : decode(buffer, topicsStart, topicsEnd).split("<D>")) {
+				int index = Constants.topicsSet.indexOf(d.replace("</D>", ""));
+				if (index >= 0) {
+					topic = index;
+					properTopics++;
+				}
+			}
+			if (properTopics != 1) {
+				topic = -1;
+			}
+		}
+		return new long[] { id, fileIndex, start, end - start, lewisSplit, topic };
+	}
+
+	private static String attribute(String tag, String name) {
+		int start = tag.indexOf(name + "=\"");
+		if (start < 0) {
+			return "";
+		}
+		start += name.length() + 2;
+		return tag.substring(start, tag.indexOf('"', start));
+	}
+
+	private static String decode(ByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the pattern at or after from, or -1.
+	 */
+	private static int indexOf(ByteBuffer buffer, byte[] pattern, int from) {
+		int last = buffer.limit() - pattern.length;
+		for (int i = from; i <= last; i++) {
+			int j = 0;
+			while (j < pattern.length && buffer.get(i + j) == pattern[j]) {
+				j++;
+			}
+			if (j == pattern.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -5,12 +5,22 @@ import java.util.regex.Pattern;
 
 public class StoryTokenizer {
 	static ArrayList<String> stopWords;
+	// Byte level tokenizers for ASCII texts, one for each thread. Null if the stop words are not supported.
+	private static ThreadLocal<AsciiTokenizer> asciiTokenizers = createAsciiTokenizers(null);
 
 	/**
 	 * Sets the stopWords of this class.
 	 */
 	public static void setStopWords(ArrayList<String> stopWords) {
 		StoryTokenizer.stopWords = stopWords;
+		asciiTokenizers = createAsciiTokenizers(stopWords);
+	}
+
+	private static ThreadLocal<AsciiTokenizer> createAsciiTokenizers(ArrayList<String> stopWords) {
+		if (!AsciiTokenizer.supportsStopWords(stopWords)) {
+			return null;
+		}
+		return ThreadLocal.withInitial(() -> new AsciiTokenizer(stopWords));
 	}
 	
 	/**
@@ -21,30 +31,46 @@ public class StoryTokenizer {
 		ArrayList<NewsStory> tokenizedStories = new ArrayList<>();
 		for (NewsStory story : stories) {
 			if (!story.topic.equals("") && isTrainingOrTest(story)) {
-				// Tokenize
-				story.titleTokens = stem(tokenizeString(story.title));
-				story.bodyTokens = stem(tokenizeString(story.body));
-				// Count terms
-				for (String token : story.titleTokens) {
-					if (story.termCounts.containsKey(token)) {
-						story.termCounts.put(token, story.termCounts.get(token) + 1);
-					} else {
-						story.termCounts.put(token, 1);
-					}
-				}
-				for (String token : story.bodyTokens) {
-					if (story.termCounts.containsKey(token)) {
-						story.termCounts.put(token, story.termCounts.get(token) + 1);
-					} else {
-						story.termCounts.put(token, 1);
-					}
-				}
+				tokenizeStory(story);
 				tokenizedStories.add(story);	
 			}
 		}
 		return tokenizedStories;
 	}
+
+	/**
+	 * Tokenizes and stems the title and body of the story and counts its terms.
+	 */
+	public static void tokenizeStory(NewsStory story) {
+		// Tokenize
+		long start = System.nanoTime();
+		story.titleTokens = tokenizeAndStem(story.title);
+		story.bodyTokens = tokenizeAndStem(story.body);
+		// Count terms
+		for (String token : story.titleTokens) {
+			story.termCounts.increment(token);
+		}
+		for (String token : story.bodyTokens) {
+			story.termCounts.increment(token);
+		}
+		StoryClassifier.getMetrics().recordTokenization(System.nanoTime() - start,
+				story.titleTokens.size() + story.bodyTokens.size());
+	}
 	
+	/**
+	 * Tokenizes and stems the text. ASCII texts are processed at byte level,
+	 * other texts fall back to tokenizeString and stem.
+	 */
+	public static ArrayList<String> tokenizeAndStem(String text) {
+		if (asciiTokenizers != null) {
+			ArrayList<String> tokens = asciiTokenizers.get().tokenize(text);
+			if (tokens != null) {
+				return tokens;
+			}
+		}
+		return stem(tokenizeString(text));
+	}
+
 	/**
 	 * Checks if the story belongs to TRAIN or TEST lewis types.
 	 */
@@ -58,13 +84,11 @@ public class StoryTokenizer {
 	 */
 	public static ArrayList<String> stem(ArrayList<String> tokens) {
 		ArrayList<String> stemmedTokens = new ArrayList<>();
-		PorterStemmer stemmer;
+		PorterStemmer stemmer = new PorterStemmer();
 	    // Stem each word.
 		for (String token : tokens) {
-			stemmer = new PorterStemmer();
-			stemmer.add(token.toCharArray(), token.length());
-			stemmer.stem();
-			stemmedTokens.add(stemmer.toString());
+			int length = stemmer.stem(token, 0, token.length());
+			stemmedTokens.add(new String(stemmer.getResultBuffer(), 0, length));
 		}
 		return stemmedTokens;
 	}
@@ -0,0 +1,232 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Generates Reuters-21578 style SGML documents for benchmarks. Words are drawn from a Zipfian
+ * distribution over a pronounceable synthetic vocabulary, and every topic prefers its own slice
+ * of the vocabulary, so the topics can be told apart like the real ones. The topic and
+ * LEWISSPLIT mix follows the real collection: about half of the stories have no topic, and
+ * only some of the others have exactly one of the topics in Constants.
+ *
+ * Usage: java -cp out main.SyntheticCorpus directory stories [seed]
+ */
+public class SyntheticCorpus {
+	/** Number of stories in the real collection. */
+	public static final int REUTERS_STORIES = 21578;
+	private static final int STORIES_PER_FILE = 1000;
+	private static final double ZIPF_EXPONENT = 1.07;
+	// Share of words drawn from the vocabulary slice of the topic.
+	private static final double TOPIC_WORD_SHARE = 0.15;
+	private static final int TOPIC_VOCABULARY_SIZE = 400;
+	private static final String[] CONSONANTS = { "b", "c", "d", "f", "g", "h", "k", "l", "m", "n", "p", "r", "s",
+			"t", "v", "w", "st", "tr", "pr", "ch" };
+	private static final String[] VOWELS = { "a", "e", "i", "o", "u", "ai", "ea", "io" };
+	// Topics of stories which do not have one of the topics in Constants.
+	private static final String[] OTHER_TOPICS = { "trade", "interest", "ship", "wheat", "corn", "cocoa", "coffee",
+			"sugar", "gold", "veg-oil", "nat-gas", "money-supply", "gnp", "livestock", "cpi" };
+	// Shares of the topics in Constants among the stories of the real collection, then of other topics.
+	private static final double[] TOPIC_SHARES = { 0.184, 0.110, 0.033, 0.027, 0.027, 0.110 };
+	// Share of the stories with a topic which have a second topic.
+	private static final double SECOND_TOPIC_SHARE = 0.15;
+	private final Random random;
+	private final String[] vocabulary;
+	// Cumulative probabilities of the vocabulary ranks.
+	private final double[] cumulative;
+	// Vocabulary ranks preferred by each topic, and their cumulative probabilities.
+	private final int[][] topicWords;
+	private final double[] topicCumulative;
+	private int newId = 1;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: SyntheticCorpus directory stories [seed]");
+			return;
+		}
+		int stories = Integer.parseInt(args[1]);
+		SyntheticCorpus corpus = new SyntheticCorpus(args.length > 2 ? Long.parseLong(args[2]) : 1,
+				vocabularySize(stories));
+		System.out.println("Generated " + corpus.write(Paths.get(args[0]), stories) + " documents.");
+	}
+
+	/**
+	 * Creates a generator with the given random seed and number of distinct words.
+	 */
+	public SyntheticCorpus(long seed, int vocabularySize) {
+		random = new Random(seed);
+		vocabulary = createVocabulary(vocabularySize);
+		cumulative = zipf(vocabularySize);
+		int topicCount = Constants.topicsSet.size() + OTHER_TOPICS.length;
+		topicWords = new int[topicCount][TOPIC_VOCABULARY_SIZE];
+		for (int[] words : topicWords) {
+			// Leave out the most frequent words, which are frequent in every topic.
+			for (int i = 0; i < words.length; i++) {
+				words[i] = 100 + random.nextInt(Math.max(1, vocabularySize - 100));
+			}
+		}
+		topicCumulative = zipf(TOPIC_VOCABULARY_SIZE);
+	}
+
+	/**
+	 * Returns the vocabulary size for a corpus of the given number of stories.
+	 * The vocabulary grows with the square root of the corpus size, as in Heaps' law.
+	 */
+	public static int vocabularySize(int stories) {
+		return (int) Math.max(1000, 40000 * Math.sqrt(stories / (double) REUTERS_STORIES));
+	}
+
+	/**
+	 * Writes the given number of stories to reut2-NNN.sgm files of 1000 stories in the directory,
+	 * which is created if needed. Returns the number of written files.
+	 */
+	public int write(Path directory, int stories) throws IOException {
+		Files.createDirectories(directory);
+		int files = 0;
+		for (int written = 0; written < stories; written += STORIES_PER_FILE) {
+			Path file = directory.resolve(String.format("reut2-%03d.sgm", files++));
+			try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+				writer.write("<!DOCTYPE lewis SYSTEM \"lewis.dtd\">\n");
+				for (int i = written; i < Math.min(stories, written + STORIES_PER_FILE); i++) {
+					writeStory(writer);
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Writes one REUTERS record.
+	 */
+	private void writeStory(BufferedWriter writer) throws IOException {
+		int[] topics = drawTopics();
+		double split = random.nextDouble();
+		String lewisSplit = (split < 0.68 ? "TRAIN" : split < 0.96 ? "TEST" : "NOT-USED");
+		StringBuilder record = new StringBuilder();
+		record.append("<REUTERS TOPICS=\"").append(topics.length > 0 ? "YES" : "NO").append("\" LEWISSPLIT=\"")
+				.append(lewisSplit).append("\" CGISPLIT=\"TRAINING-SET\" OLDID=\"").append(newId + 5000)
+				.append("\" NEWID=\"").append(newId++).append("\">\n");
+		record.append("<DATE>26-FEB-1987 15:01:01.79</DATE>\n<TOPICS>");
+		for (int topic : topics) {
+			record.append("<D>").append(topicName(topic)).append("</D>");
+		}
+		record.append("</TOPICS>\n<PLACES><D>usa</D></PLACES>\n<PEOPLE></PEOPLE>\n<ORGS></ORGS>\n")
+				.append("<EXCHANGES></EXCHANGES>\n<COMPANIES></COMPANIES>\n<UNKNOWN></UNKNOWN>\n<TEXT>&#2;\n<TITLE>");
+		int mainTopic = (topics.length > 0 ? topics[0] : -1);
+		int titleLength = 3 + random.nextInt(7);
+		for (int i = 0; i < titleLength; i++) {
+			record.append(i > 0 ? " " : "").append(drawWord(mainTopic).toUpperCase());
+		}
+		record.append("</TITLE>\n<DATELINE>    NEW YORK, Feb 26 - </DATELINE><BODY>");
+		// Body lengths are roughly log-normal with a median of about 90 words.
+		int bodyLength = (int) Math.min(2000, Math.exp(4.5 + 0.8 * random.nextGaussian()));
+		int lineLength = 0;
+		for (int i = 0; i < bodyLength; i++) {
+			String word = (random.nextDouble() < 0.04 ? Integer.toString(random.nextInt(1000)) + "."
+					+ random.nextInt(100) : drawWord(mainTopic));
+			if (lineLength + word.length() > 65) {
+				record.append('\n');
+				lineLength = 0;
+			} else if (i > 0) {
+				record.append(' ');
+			}
+			record.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+			lineLength += word.length() + 1;
+			if (random.nextInt(15) == 0) {
+				record.append(random.nextInt(4) == 0 ? ',' : '.');
+			}
+		}
+		record.append("\n Reuter\n&#3;</BODY></TEXT>\n</REUTERS>\n");
+		writer.write(record.toString());
+	}
+
+	/**
+	 * Returns the topics of a story as indexes of the topics in Constants followed by the other topics.
+	 */
+	private int[] drawTopics() {
+		double draw = random.nextDouble();
+		for (int topic = 0; topic < TOPIC_SHARES.length; topic++) {
+			if (draw < TOPIC_SHARES[topic]) {
+				if (topic == TOPIC_SHARES.length - 1) {
+					topic += random.nextInt(OTHER_TOPICS.length);
+				}
+				if (random.nextDouble() < SECOND_TOPIC_SHARE) {
+					return new int[] { topic, Constants.topicsSet.size() + random.nextInt(OTHER_TOPICS.length) };
+				}
+				return new int[] { topic };
+			}
+			draw -= TOPIC_SHARES[topic];
+		}
+		return new int[0];
+	}
+
+	private static String topicName(int topic) {
+		int topicCount = Constants.topicsSet.size();
+		return (topic < topicCount ? Constants.topicsSet.get(topic) : OTHER_TOPICS[topic - topicCount]);
+	}
+
+	/**
+	 * Returns a word of the vocabulary, which comes from the slice of the topic with some probability.
+	 */
+	private String drawWord(int topic) {
+		if (topic >= 0 && random.nextDouble() < TOPIC_WORD_SHARE) {
+			return vocabulary[topicWords[topic][draw(topicCumulative)]];
+		}
+		return vocabulary[draw(cumulative)];
+	}
+
+	/**
+	 * Returns a rank drawn from the cumulative distribution.
+	 */
+	private int draw(double[] cumulative) {
+		int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(cumulative.length - 1, rank < 0 ? -rank - 1 : rank);
+	}
+
+	/**
+	 * Returns the cumulative probabilities of a Zipfian distribution over the given number of ranks.
+	 */
+	private static double[] zipf(int size) {
+		double[] cumulative = new double[size];
+		double sum = 0;
+		for (int rank = 0; rank < size; rank++) {
+			sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+			cumulative[rank] = sum;
+		}
+		for (int rank = 0; rank < size; rank++) {
+			cumulative[rank] /= sum;
+		}
+		return cumulative;
+	}
+
+	/**
+	 * Returns distinct words made of syllables. Frequent ranks get shorter words, as in real text.
+	 */
+	private String[] createVocabulary(int size) {
+		String[] words = new String[size];
+		HashSet<String> used = new HashSet<>();
+		for (int rank = 0; rank < size; rank++) {
+			int syllables = 1 + (int) (Math.log10(rank + 10) / 1.5) + random.nextInt(2);
+			String word;
+			do {
+				StringBuilder builder = new StringBuilder();
+				for (int i = 0; i < syllables; i++) {
+					builder.append(CONSONANTS[random.nextInt(CONSONANTS.length)]).append(VOWELS[random.nextInt(VOWELS.length)]);
+				}
+				if (random.nextBoolean()) {
+					builder.append(CONSONANTS[random.nextInt(CONSONANTS.length)]);
+				}
+				word = builder.toString();
+			} while (!used.add(word));
+			words[rank] = word;
+		}
+		return words;
+	}
+}
@@ -0,0 +1,34 @@
+package main;
+
+/**
+ * A compiled naive Bayes model.
+ * Topics are referred to by their index in Constants.topicsSet,
+ * terms are referred to by the id returned from getTermID.
+ */
+public interface TopicModel {
+	/**
+	 * Returns the id of the term, or -1 if the term is not in the dictionary of the model.
+	 */
+	int getTermID(String term);
+
+	/**
+	 * Returns the log probability of the topic with the given index.
+	 */
+	double getTopicProbability(int topic);
+
+	/**
+	 * Returns the log probability of the term with the given id for the topic with the given index.
+	 */
+	double getTermProbability(int topic, int termID);
+
+	/**
+	 * Returns the number of bytes used to store the term probabilities.
+	 */
+	long getWeightBytes();
+
+	/**
+	 * Returns the object which assigns the term ids. Models returning the same object
+	 * give every term the same id, so a term id looked up once can be used with each of them.
+	 */
+	Object getTermIndex();
+}
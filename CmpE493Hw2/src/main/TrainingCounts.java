@@ -0,0 +1,276 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import main.collections.IntDoubleHashMap;
+import main.collections.IntIntHashMap;
+import main.collections.ObjectIntHashMap;
+
+/**
+ * The statistics of the training stories which the models are compiled from: the number of stories
+ * of each topic, the number of times each term occurs in each topic and the number of stories of
+ * each topic containing each term. Stories can be added at any time, so the counts can be kept
+ * up to date without reading the earlier stories again.
+ *
+ * The dictionary is kept in the order the terms are first seen, so counts filled with the stories
+ * in the order of Main give the same models and the same mutual information selection as Main.
+ * The counts are additive, so counts of consecutive parts of the stories can be filled separately,
+ * written to partial files and merged in the same order with the same result.
+ *
+ * Partial files are gzip compressed and contain a magic number, the topic count, the story count
+ * of each topic, the term count and then each term with its count and document frequency in each topic.
+ */
+public class TrainingCounts {
+	private static final int MAGIC = 0x5443_4E31;
+	private final ArrayList<String> dictionary = new ArrayList<>();
+	private final ObjectIntHashMap<String> termIDs = new ObjectIntHashMap<>();
+	private final int[] documentCounts = new int[Constants.topicsSet.size()];
+	// Term occurrences and document frequencies of each topic, by term id.
+	private final IntIntHashMap[] termCounts = new IntIntHashMap[Constants.topicsSet.size()];
+	private final IntIntHashMap[] documentFrequencies = new IntIntHashMap[Constants.topicsSet.size()];
+
+	public TrainingCounts() {
+		for (int topic = 0; topic < termCounts.length; topic++) {
+			termCounts[topic] = new IntIntHashMap();
+			documentFrequencies[topic] = new IntIntHashMap();
+		}
+	}
+
+	/**
+	 * Adds the counts of a tokenized story. Returns false and ignores the story
+	 * if it is not a training story of one of the topics.
+	 */
+	public boolean add(NewsStory story) {
+		int topic = Constants.topicsSet.indexOf(story.topic);
+		if (topic < 0 || !story.lewissplit.equals("TRAIN")) {
+			return false;
+		}
+		documentCounts[topic]++;
+		for (int slot = story.termCounts.nextSlot(-1); slot >= 0; slot = story.termCounts.nextSlot(slot)) {
+			String term = story.termCounts.keyAt(slot);
+			int termID = termIDs.adjustOrPut(term, 0, dictionary.size());
+			if (termID == dictionary.size()) {
+				dictionary.add(term);
+			}
+			int count = story.termCounts.valueAt(slot);
+			termCounts[topic].adjustOrPut(termID, count, count);
+			documentFrequencies[topic].increment(termID);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the counts of the other training counts. The terms which are new to these counts
+	 * are added to the dictionary in the order of the other dictionary.
+	 */
+	public void merge(TrainingCounts other) {
+		for (int topic = 0; topic < documentCounts.length; topic++) {
+			documentCounts[topic] += other.documentCounts[topic];
+		}
+		for (int otherID = 0; otherID < other.dictionary.size(); otherID++) {
+			String term = other.dictionary.get(otherID);
+			int termID = termIDs.adjustOrPut(term, 0, dictionary.size());
+			if (termID == dictionary.size()) {
+				dictionary.add(term);
+			}
+			for (int topic = 0; topic < documentCounts.length; topic++) {
+				int count = other.termCounts[topic].get(otherID);
+				if (count > 0) {
+					termCounts[topic].adjustOrPut(termID, count, count);
+					documentFrequencies[topic].adjustOrPut(termID, other.documentFrequencies[topic].get(otherID),
+							other.documentFrequencies[topic].get(otherID));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the counts to a partial file.
+	 */
+	public void write(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(Files.newOutputStream(file))))) {
+			write(out);
+		}
+	}
+
+	/**
+	 * Writes the counts to the stream, in the format of the partial files before compression.
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(documentCounts.length);
+		for (int count : documentCounts) {
+			out.writeInt(count);
+		}
+		out.writeInt(dictionary.size());
+		for (int term = 0; term < dictionary.size(); term++) {
+			out.writeUTF(dictionary.get(term));
+			for (int topic = 0; topic < documentCounts.length; topic++) {
+				out.writeInt(termCounts[topic].get(term));
+				out.writeInt(documentFrequencies[topic].get(term));
+			}
+		}
+	}
+
+	/**
+	 * Reads a partial file written by write.
+	 */
+	public static TrainingCounts read(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(file))))) {
+			return read(in, file.toString());
+		}
+	}
+
+	/**
+	 * Reads counts written to a stream by write. The source is only used in error messages.
+	 */
+	public static TrainingCounts read(DataInputStream in, String source) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a training counts file: " + source);
+		}
+		TrainingCounts counts = new TrainingCounts();
+		if (in.readInt() != counts.documentCounts.length) {
+			throw new IOException("Training counts file " + source + " has different topics.");
+		}
+		for (int topic = 0; topic < counts.documentCounts.length; topic++) {
+			counts.documentCounts[topic] = in.readInt();
+		}
+		int termCount = in.readInt();
+		for (int term = 0; term < termCount; term++) {
+			String word = in.readUTF();
+			counts.termIDs.put(word, term);
+			counts.dictionary.add(word);
+			for (int topic = 0; topic < counts.documentCounts.length; topic++) {
+				int count = in.readInt();
+				int documentFrequency = in.readInt();
+				if (count > 0) {
+					counts.termCounts[topic].put(term, count);
+					counts.documentFrequencies[topic].put(term, documentFrequency);
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the number of training stories.
+	 */
+	public int getDocumentCount() {
+		int total = 0;
+		for (int count : documentCounts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the terms of the training stories in the order they were first seen.
+	 */
+	public ArrayList<String> getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Compiles a model of every term in the dictionary.
+	 */
+	public DenseTopicModel compile() {
+		return compile(null);
+	}
+
+	/**
+	 * Compiles a model of the given terms, or of every term if null, with add-one smoothing like Main.
+	 */
+	public DenseTopicModel compile(Set<String> terms) {
+		ObjectIntHashMap<String> modelTermIDs = new ObjectIntHashMap<>(terms == null ? dictionary.size() : terms.size());
+		// Dictionary ids of the model terms.
+		int[] dictionaryIDs = new int[terms == null ? dictionary.size() : terms.size()];
+		for (int term = 0; term < dictionary.size(); term++) {
+			if (terms == null || terms.contains(dictionary.get(term))) {
+				dictionaryIDs[modelTermIDs.size()] = term;
+				modelTermIDs.put(dictionary.get(term), modelTermIDs.size());
+			}
+		}
+		int topicCount = Constants.topicsSet.size();
+		int totalDocCount = getDocumentCount();
+		double[] topicProbabilities = new double[topicCount];
+		double[][] termProbabilities = new double[topicCount][modelTermIDs.size()];
+		for (int topic = 0; topic < topicCount; topic++) {
+			topicProbabilities[topic] = Math.log(documentCounts[topic]/(double)totalDocCount);
+			// Denominator: total number of terms in this topic + dictionary size.
+			int denominator = modelTermIDs.size();
+			for (int id = 0; id < modelTermIDs.size(); id++) {
+				denominator += termCounts[topic].get(dictionaryIDs[id]);
+			}
+			for (int id = 0; id < modelTermIDs.size(); id++) {
+				int numerator = termCounts[topic].get(dictionaryIDs[id]) + 1;
+				termProbabilities[topic][id] = Math.log(numerator/(double)denominator);
+			}
+		}
+		return new DenseTopicModel(modelTermIDs, topicProbabilities, termProbabilities);
+	}
+
+	/**
+	 * Compiles an off-heap model of the given terms, or of every term if null, written to and mapped from
+	 * the file if it is not null. Its probabilities are the same as the ones of compile.
+	 */
+	public OffHeapTopicModel compileOffHeap(Set<String> terms, Path file) throws IOException {
+		ArrayList<String> modelTerms = new ArrayList<>();
+		for (String term : dictionary) {
+			if (terms == null || terms.contains(term)) {
+				modelTerms.add(term);
+			}
+		}
+		int topicCount = Constants.topicsSet.size();
+		OffHeapCountMatrix matrix = new OffHeapCountMatrix(topicCount, modelTerms.size());
+		double[] topicProbabilities = new double[topicCount];
+		for (int topic = 0; topic < topicCount; topic++) {
+			topicProbabilities[topic] = Math.log(documentCounts[topic]/(double)getDocumentCount());
+			for (int id = 0; id < modelTerms.size(); id++) {
+				matrix.increment(topic, id, termCounts[topic].get(termIDs.get(modelTerms.get(id))));
+			}
+		}
+		return OffHeapTopicModel.compile(matrix, topicProbabilities, modelTerms, file);
+	}
+
+	/**
+	 * Returns the union of the terms with the highest mutual information for each topic,
+	 * calculated from the document frequencies as in Main.
+	 */
+	public Set<String> selectDistinctiveTerms(int termsPerTopic) {
+		int totalDocCount = getDocumentCount();
+		Set<String> distinctiveTerms = new HashSet<>();
+		for (int topic = 0; topic < documentCounts.length; topic++) {
+			IntDoubleHashMap mutualInfos = new IntDoubleHashMap();
+			for (int term = 0; term < dictionary.size(); term++) {
+				// The stories containing this term and are from this topic.
+				int yTermYTopic = documentFrequencies[topic].getOrDefault(term, 1);
+				// The stories containing this term and are not from this topic.
+				int yTermNTopic = 1;
+				for (int other = 0; other < documentCounts.length; other++) {
+					if (other != topic) {
+						yTermNTopic += documentFrequencies[other].get(term);
+					}
+				}
+				MutualInformation.keepHighest(mutualInfos, term, MutualInformation.calculate(yTermYTopic, yTermNTopic,
+						documentCounts[topic], totalDocCount), termsPerTopic);
+			}
+			for (int slot = mutualInfos.nextSlot(-1); slot >= 0; slot = mutualInfos.nextSlot(slot)) {
+				distinctiveTerms.add(dictionary.get(mutualInfos.keyAt(slot)));
+			}
+		}
+		return distinctiveTerms;
+	}
+}
@@ -0,0 +1,68 @@
+package main.collections;
+
+/**
+ * Count-Min sketch which estimates the counts of keys in a fixed amount of memory.
+ * Estimates are never lower than the true count, and with probability 1 - delta
+ * they are at most epsilon * (total of all counts) higher.
+ */
+public class CountMinSketch {
+	private final int width;
+	private final int depth;
+	private final int[] counts;
+	private long total;
+
+	/**
+	 * Creates a sketch with the given error bounds, using ceil(e / epsilon) counters
+	 * in each of ceil(ln(1 / delta)) rows.
+	 */
+	public CountMinSketch(double epsilon, double delta) {
+		if (epsilon <= 0 || delta <= 0 || delta >= 1) {
+			throw new IllegalArgumentException("Invalid error bounds: epsilon=" + epsilon + ", delta=" + delta);
+		}
+		this.width = (int) Math.ceil(Math.E / epsilon);
+		this.depth = (int) Math.ceil(Math.log(1 / delta));
+		this.counts = new int[width * depth];
+	}
+
+	/**
+	 * Adds the count to the key.
+	 */
+	public void add(Object key, int count) {
+		int hash = key.hashCode();
+		int h1 = HashUtil.mix(hash);
+		int h2 = HashUtil.mix(h1 ^ hash) | 1;
+		for (int row = 0; row < depth; row++) {
+			counts[row * width + index(h1 + row * h2)] += count;
+		}
+		total += count;
+	}
+
+	/**
+	 * Returns the estimated count of the key.
+	 */
+	public int estimate(Object key) {
+		int hash = key.hashCode();
+		int h1 = HashUtil.mix(hash);
+		int h2 = HashUtil.mix(h1 ^ hash) | 1;
+		int min = Integer.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, counts[row * width + index(h1 + row * h2)]);
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the sum of all counts added to the sketch.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	public long getMemoryBytes() {
+		return 4L * counts.length;
+	}
+
+	private int index(int hash) {
+		return (hash & Integer.MAX_VALUE) % width;
+	}
+}
@@ -0,0 +1,320 @@
+package main.collections;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Frozen set of strings which maps each string to its rank in the UTF-8 byte order of the strings.
+ * The strings are front coded in blocks: the first string of a block is stored completely, and each
+ * other string as the length of the prefix it shares with the previous string and the rest of its bytes.
+ * A lookup binary searches the first strings of the blocks and then scans one block without allocating.
+ * Strings with the same prefix have consecutive ids, so they can be enumerated in order.
+ *
+ * Everything is kept in one byte buffer, which can be a slice of a mapped file:
+ * - string count and block count as ints
+ * - offset of each block from the start of the buffer as ints
+ * - the blocks, with lengths as variable length integers of 7 bits per byte.
+ */
+public class FrontCodedVocabulary {
+	private static final int BLOCK_SIZE = 16;
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int blockCount;
+
+	private FrontCodedVocabulary(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = buffer.getInt(0);
+		this.blockCount = buffer.getInt(4);
+	}
+
+	/**
+	 * Builds a vocabulary of the distinct strings of the collection.
+	 */
+	public static FrontCodedVocabulary build(Collection<String> strings) {
+		byte[][] sorted = new byte[strings.size()][];
+		int count = 0;
+		for (String string : strings) {
+			sorted[count++] = string.getBytes(StandardCharsets.UTF_8);
+		}
+		Arrays.sort(sorted, FrontCodedVocabulary::compare);
+		// Remove the duplicates.
+		ArrayList<byte[]> distinct = new ArrayList<>(sorted.length);
+		for (byte[] bytes : sorted) {
+			if (distinct.isEmpty() || compare(distinct.get(distinct.size() - 1), bytes) != 0) {
+				distinct.add(bytes);
+			}
+		}
+		int blocks = (distinct.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int byteSize = 8 + 4 * blocks;
+		for (int i = 0; i < distinct.size(); i++) {
+			int shared = (i % BLOCK_SIZE == 0 ? 0 : sharedPrefix(distinct.get(i - 1), distinct.get(i)));
+			int rest = distinct.get(i).length - shared;
+			byteSize += (i % BLOCK_SIZE == 0 ? 0 : varIntSize(shared)) + varIntSize(rest) + rest;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(byteSize);
+		buffer.putInt(distinct.size()).putInt(blocks);
+		int position = 8 + 4 * blocks;
+		for (int i = 0; i < distinct.size(); i++) {
+			byte[] bytes = distinct.get(i);
+			int shared = 0;
+			if (i % BLOCK_SIZE == 0) {
+				buffer.putInt(8 + 4 * (i / BLOCK_SIZE), position);
+			} else {
+				shared = sharedPrefix(distinct.get(i - 1), bytes);
+				position = putVarInt(buffer, position, shared);
+			}
+			position = putVarInt(buffer, position, bytes.length - shared);
+			for (int j = shared; j < bytes.length; j++) {
+				buffer.put(position++, bytes[j]);
+			}
+		}
+		return new FrontCodedVocabulary(buffer);
+	}
+
+	/**
+	 * Returns the vocabulary stored at the start of the buffer, without copying it.
+	 * The buffer is expected to be in big-endian order.
+	 */
+	public static FrontCodedVocabulary wrap(ByteBuffer buffer) {
+		return new FrontCodedVocabulary(buffer.slice());
+	}
+
+	/**
+	 * Returns a read only view of the bytes of the vocabulary, which can be written to a file and wrapped again.
+	 */
+	public ByteBuffer getBytes() {
+		ByteBuffer bytes = buffer.asReadOnlyBuffer();
+		bytes.clear();
+		bytes.limit(getByteSize());
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of bytes used by the vocabulary.
+	 */
+	public int getByteSize() {
+		if (size == 0) {
+			return 8;
+		}
+		// Skip the strings of the last block.
+		int position = buffer.getInt(8 + 4 * (blockCount - 1));
+		for (int i = (blockCount - 1) * BLOCK_SIZE; i < size; i++) {
+			if (i % BLOCK_SIZE != 0) {
+				position += varIntSize(readVarInt(position));
+			}
+			int rest = readVarInt(position);
+			position += varIntSize(rest) + rest;
+		}
+		return position;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of the string, or -1 if it is not in the vocabulary.
+	 */
+	public int get(String string) {
+		int id = search(string.getBytes(StandardCharsets.UTF_8));
+		return (id >= 0 ? id : -1);
+	}
+
+	/**
+	 * Returns the string with the given id.
+	 */
+	public String get(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("No string with id " + id);
+		}
+		byte[] bytes = new byte[16];
+		int length = 0;
+		int position = buffer.getInt(8 + 4 * (id / BLOCK_SIZE));
+		for (int i = id - id % BLOCK_SIZE; i <= id; i++) {
+			int shared = 0;
+			if (i % BLOCK_SIZE != 0) {
+				shared = readVarInt(position);
+				position += varIntSize(shared);
+			}
+			int rest = readVarInt(position);
+			position += varIntSize(rest);
+			if (shared + rest > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, shared + rest));
+			}
+			for (int j = 0; j < rest; j++) {
+				bytes[shared + j] = buffer.get(position + j);
+			}
+			position += rest;
+			length = shared + rest;
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Calls the procedure with each string starting with the prefix and its id, in id order.
+	 */
+	public void forEachWithPrefix(String prefix, ObjectIntProcedure<String> procedure) {
+		byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+		int first = search(prefixBytes);
+		if (first < 0) {
+			first = -first - 1;
+		}
+		if (first >= size) {
+			return;
+		}
+		byte[] bytes = new byte[Math.max(16, prefixBytes.length)];
+		int position = buffer.getInt(8 + 4 * (first / BLOCK_SIZE));
+		for (int i = first - first % BLOCK_SIZE; i < size; i++) {
+			int shared = 0;
+			if (i % BLOCK_SIZE != 0) {
+				shared = readVarInt(position);
+				position += varIntSize(shared);
+			}
+			int rest = readVarInt(position);
+			position += varIntSize(rest);
+			if (shared + rest > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, shared + rest));
+			}
+			for (int j = 0; j < rest; j++) {
+				bytes[shared + j] = buffer.get(position + j);
+			}
+			position += rest;
+			if (i < first) {
+				continue;
+			}
+			if (shared + rest < prefixBytes.length || sharedPrefix(bytes, prefixBytes) < prefixBytes.length) {
+				return;
+			}
+			procedure.apply(new String(bytes, 0, shared + rest, StandardCharsets.UTF_8), i);
+		}
+	}
+
+	/**
+	 * Returns the id of the key if it is in the vocabulary, otherwise -(insertion point) - 1,
+	 * where the insertion point is the id of the first greater string.
+	 */
+	private int search(byte[] key) {
+		// Find the last block whose first string is not greater than the key.
+		int low = 0;
+		int high = blockCount - 1;
+		int block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int position = buffer.getInt(8 + 4 * middle);
+			int length = readVarInt(position);
+			int comparison = compare(position + varIntSize(length), length, key, 0);
+			if (comparison == 0) {
+				return middle * BLOCK_SIZE;
+			}
+			if (comparison < 0) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (block < 0) {
+			return -1;
+		}
+		// Scan the block, keeping the length of the prefix the previous string shares with the key.
+		// The previous string is always smaller than the key.
+		int position = buffer.getInt(8 + 4 * block);
+		int length = readVarInt(position);
+		position += varIntSize(length);
+		int matched = 0;
+		while (matched < length && matched < key.length && buffer.get(position + matched) == key[matched]) {
+			matched++;
+		}
+		position += length;
+		int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+		for (int id = block * BLOCK_SIZE + 1; id < end; id++) {
+			int shared = readVarInt(position);
+			position += varIntSize(shared);
+			int rest = readVarInt(position);
+			position += varIntSize(rest);
+			if (shared < matched) {
+				// The string differs from the previous one before the key does, so it is greater than the key.
+				return -id - 1;
+			}
+			if (shared == matched) {
+				int k = 0;
+				while (k < rest && matched + k < key.length && buffer.get(position + k) == key[matched + k]) {
+					k++;
+				}
+				if (matched + k == key.length) {
+					// The key is a prefix of the string, or equal to it.
+					return (k == rest ? id : -id - 1);
+				}
+				if (k < rest && (buffer.get(position + k) & 0xFF) > (key[matched + k] & 0xFF)) {
+					return -id - 1;
+				}
+				matched += k;
+			}
+			// Otherwise the string shares more with the previous one, so it is still smaller than the key.
+			position += rest;
+		}
+		return -end - 1;
+	}
+
+	/**
+	 * Compares the bytes of the buffer at the position with the key, as unsigned bytes.
+	 */
+	private int compare(int position, int length, byte[] key, int keyOffset) {
+		int common = Math.min(length, key.length - keyOffset);
+		for (int i = 0; i < common; i++) {
+			int difference = (buffer.get(position + i) & 0xFF) - (key[keyOffset + i] & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - (key.length - keyOffset);
+	}
+
+	private static int compare(byte[] first, byte[] second) {
+		int common = sharedPrefix(first, second);
+		if (common < first.length && common < second.length) {
+			return (first[common] & 0xFF) - (second[common] & 0xFF);
+		}
+		return first.length - second.length;
+	}
+
+	private static int sharedPrefix(byte[] first, byte[] second) {
+		int common = 0;
+		while (common < first.length && common < second.length && first[common] == second[common]) {
+			common++;
+		}
+		return common;
+	}
+
+	private int readVarInt(int position) {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = buffer.get(position++);
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	private static int putVarInt(ByteBuffer buffer, int position, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put(position++, (byte) value);
+		return position;
+	}
+
+	private static int varIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,39 @@
+package main.collections;
+
+/**
+ * Shared sizing and hashing helpers of the open addressing maps.
+ */
+final class HashUtil {
+	// Tables are resized when they are three quarters full.
+	private static final double LOAD_FACTOR = 0.75;
+
+	private HashUtil() {
+	}
+
+	/**
+	 * Spreads the bits of a hash code, so that keys with similar hash codes
+	 * do not end up in neighbouring slots.
+	 */
+	static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the power of two table size which can hold the expected number of keys.
+	 */
+	static int tableSize(int expectedSize) {
+		int capacity = 4;
+		while (maxSize(capacity) < expectedSize) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of keys a table of the given size holds before it is resized.
+	 */
+	static int maxSize(int capacity) {
+		return (int) (capacity * LOAD_FACTOR);
+	}
+}
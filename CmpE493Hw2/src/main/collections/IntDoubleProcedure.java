@@ -0,0 +1,8 @@
+package main.collections;
+
+/**
+ * Receives the entries of an IntDoubleHashMap.
+ */
+public interface IntDoubleProcedure {
+	void apply(int key, double value);
+}
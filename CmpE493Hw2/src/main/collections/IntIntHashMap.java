@@ -0,0 +1,169 @@
+package main.collections;
+
+/**
+ * Open addressing map from primitive ints to primitive ints.
+ * Uses linear probing with 0 marking empty slots.
+ * The key 0 itself is kept in an extra slot at the end of the table.
+ * Used slots can be iterated with nextSlot, keyAt and valueAt without allocation.
+ */
+public class IntIntHashMap {
+	private static final int DEFAULT_CAPACITY = 16;
+	private int[] keys;
+	private int[] values;
+	private boolean hasZeroKey;
+	private int size;
+	private int mask;
+
+	public IntIntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a map which can hold the expected number of keys without resizing.
+	 */
+	public IntIntHashMap(int expectedSize) {
+		allocate(HashUtil.tableSize(expectedSize));
+	}
+
+	/**
+	 * Returns the value of the key, or 0 if the key is not in the map.
+	 */
+	public int get(int key) {
+		return getOrDefault(key, 0);
+	}
+
+	/**
+	 * Returns the value of the key, or the default value if the key is not in the map.
+	 */
+	public int getOrDefault(int key, int defaultValue) {
+		int slot = findSlot(key);
+		return isUsed(slot) ? values[slot] : defaultValue;
+	}
+
+	public boolean containsKey(int key) {
+		return isUsed(findSlot(key));
+	}
+
+	/**
+	 * Sets the value of the key and returns the previous value, or 0 if the key was not in the map.
+	 */
+	public int put(int key, int value) {
+		int slot = findSlot(key);
+		if (isUsed(slot)) {
+			int previous = values[slot];
+			values[slot] = value;
+			return previous;
+		}
+		insert(slot, key, value);
+		return 0;
+	}
+
+	/**
+	 * Increments the value of the key by one and returns the new value.
+	 * Keys which are not in the map start from 0.
+	 */
+	public int increment(int key) {
+		return adjustOrPut(key, 1, 1);
+	}
+
+	/**
+	 * Adds the adjustment to the value of the key if it is in the map,
+	 * puts the key with the given value otherwise. Returns the new value.
+	 */
+	public int adjustOrPut(int key, int adjustment, int putValue) {
+		int slot = findSlot(key);
+		if (isUsed(slot)) {
+			return values[slot] += adjustment;
+		}
+		insert(slot, key, putValue);
+		return putValue;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the index of the first used slot after the given one, or -1 if there is none.
+	 * Iteration starts with nextSlot(-1).
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot + 1; i < keys.length; i++) {
+			if (isUsed(i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Calls the procedure for every entry of the map.
+	 */
+	public void forEach(IntIntProcedure procedure) {
+		for (int i = nextSlot(-1); i >= 0; i = nextSlot(i)) {
+			procedure.apply(keys[i], values[i]);
+		}
+	}
+
+	/**
+	 * Returns the slot of the key, or the empty slot where it should be inserted.
+	 */
+	private int findSlot(int key) {
+		if (key == 0) {
+			return mask + 1;
+		}
+		int slot = HashUtil.mix(key) & mask;
+		while (keys[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean isUsed(int slot) {
+		return slot == mask + 1 ? hasZeroKey : keys[slot] != 0;
+	}
+
+	private void insert(int slot, int key, int value) {
+		keys[slot] = key;
+		values[slot] = value;
+		if (key == 0) {
+			hasZeroKey = true;
+		}
+		if (++size > HashUtil.maxSize(mask + 1)) {
+			rehash();
+		}
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate((mask + 1) * 2);
+		for (int i = 0; i < oldKeys.length - 1; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+		// Move the zero key to the new extra slot.
+		values[mask + 1] = oldValues[oldKeys.length - 1];
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity + 1];
+		values = new int[capacity + 1];
+		mask = capacity - 1;
+	}
+}
@@ -0,0 +1,8 @@
+package main.collections;
+
+/**
+ * Receives the entries of an IntIntHashMap.
+ */
+public interface IntIntProcedure {
+	void apply(int key, int value);
+}
@@ -0,0 +1,201 @@
+package main.collections;
+
+/**
+ * Open addressing map from objects to primitive ints.
+ * Uses linear probing, so incrementing a count only needs one probe
+ * and does not box the value.
+ * Used slots can be iterated with nextSlot, keyAt and valueAt without allocation.
+ */
+public class ObjectIntHashMap<K> {
+	private static final int DEFAULT_CAPACITY = 16;
+	private Object[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	public ObjectIntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a map which can hold the expected number of keys without resizing.
+	 */
+	public ObjectIntHashMap(int expectedSize) {
+		allocate(HashUtil.tableSize(expectedSize));
+	}
+
+	/**
+	 * Returns the value of the key, or 0 if the key is not in the map.
+	 */
+	public int get(K key) {
+		return getOrDefault(key, 0);
+	}
+
+	/**
+	 * Returns the value of the key, or the default value if the key is not in the map.
+	 */
+	public int getOrDefault(K key, int defaultValue) {
+		int slot = findSlot(key);
+		return keys[slot] == null ? defaultValue : values[slot];
+	}
+
+	public boolean containsKey(K key) {
+		return keys[findSlot(key)] != null;
+	}
+
+	/**
+	 * Sets the value of the key and returns the previous value, or 0 if the key was not in the map.
+	 */
+	public int put(K key, int value) {
+		int slot = findSlot(key);
+		if (keys[slot] != null) {
+			int previous = values[slot];
+			values[slot] = value;
+			return previous;
+		}
+		insert(slot, key, value);
+		return 0;
+	}
+
+	/**
+	 * Increments the value of the key by one and returns the new value.
+	 * Keys which are not in the map start from 0.
+	 */
+	public int increment(K key) {
+		return adjustOrPut(key, 1, 1);
+	}
+
+	/**
+	 * Adds the adjustment to the value of the key if it is in the map,
+	 * puts the key with the given value otherwise. Returns the new value.
+	 */
+	public int adjustOrPut(K key, int adjustment, int putValue) {
+		int slot = findSlot(key);
+		if (keys[slot] != null) {
+			return values[slot] += adjustment;
+		}
+		insert(slot, key, putValue);
+		return putValue;
+	}
+
+	/**
+	 * Removes the key and returns its value, or 0 if the key was not in the map.
+	 */
+	public int remove(K key) {
+		int slot = findSlot(key);
+		if (keys[slot] == null) {
+			return 0;
+		}
+		int previous = values[slot];
+		size--;
+		// Shift the following entries of the probe sequence back, so no lookup stops at the gap.
+		int gap = slot;
+		for (int i = (gap + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+			int home = HashUtil.mix(keys[i].hashCode()) & mask;
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+		keys[gap] = null;
+		return previous;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of slots of the table.
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Returns the index of the first used slot after the given one, or -1 if there is none.
+	 * Iteration starts with nextSlot(-1).
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot + 1; i < keys.length; i++) {
+			if (keys[i] != null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	public K keyAt(int slot) {
+		return (K) keys[slot];
+	}
+
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Calls the procedure for every entry of the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(ObjectIntProcedure<? super K> procedure) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				procedure.apply((K) keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot of the key, or the empty slot where it should be inserted.
+	 */
+	private int findSlot(Object key) {
+		int slot = HashUtil.mix(key.hashCode()) & mask;
+		while (keys[slot] != null && !keys[slot].equals(key)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void insert(int slot, K key, int value) {
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > HashUtil.maxSize(keys.length)) {
+			rehash();
+		}
+	}
+
+	private void rehash() {
+		Object[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = nextSlot(-1); i >= 0; i = nextSlot(i)) {
+			sb.append(sb.length() > 1 ? ", " : "").append(keys[i]).append('=').append(values[i]);
+		}
+		return sb.append('}').toString();
+	}
+
+}
@@ -0,0 +1,8 @@
+package main.collections;
+
+/**
+ * Receives the entries of an ObjectIntHashMap.
+ */
+public interface ObjectIntProcedure<K> {
+	void apply(K key, int value);
+}
@@ -0,0 +1,172 @@
+package main.collections;
+
+import java.util.ArrayList;
+
+/**
+ * Space-Saving summary which keeps the most frequent keys of a stream
+ * with a fixed number of counters. When a new key arrives and all counters are used,
+ * the key with the lowest count is replaced and the new key inherits its count as error.
+ * For every kept key, count - error <= true count <= count.
+ */
+public class SpaceSaving<K> {
+	private final int capacity;
+	// Min heap of the kept keys ordered by count.
+	private final Object[] keys;
+	private final long[] counts;
+	private final long[] errors;
+	private int size;
+	// Position of each key in the heap.
+	private final ObjectIntHashMap<K> positions;
+
+	/**
+	 * Creates a summary which keeps at most the given number of keys.
+	 */
+	public SpaceSaving(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.keys = new Object[capacity];
+		this.counts = new long[capacity];
+		this.errors = new long[capacity];
+		this.positions = new ObjectIntHashMap<>(capacity);
+	}
+
+	/**
+	 * Adds the count to the key.
+	 */
+	public void offer(K key, long count) {
+		int position = positions.getOrDefault(key, -1);
+		if (position < 0 && size < capacity) {
+			// Add the key as a new leaf.
+			position = size++;
+			keys[position] = key;
+			counts[position] = count;
+			errors[position] = 0;
+			positions.put(key, position);
+			siftUp(position);
+			return;
+		}
+		if (position < 0) {
+			// Replace the key with the lowest count.
+			position = 0;
+			@SuppressWarnings("unchecked")
+			K evicted = (K) keys[0];
+			positions.remove(evicted);
+			errors[0] = counts[0];
+			keys[0] = key;
+			positions.put(key, 0);
+		}
+		counts[position] += count;
+		siftDown(position);
+	}
+
+	/**
+	 * Returns the count of the key, or 0 if it is not kept.
+	 */
+	public long getCount(K key) {
+		int position = positions.getOrDefault(key, -1);
+		return position < 0 ? 0 : counts[position];
+	}
+
+	/**
+	 * Returns how much the count of the key may be higher than its true count.
+	 */
+	public long getError(K key) {
+		int position = positions.getOrDefault(key, -1);
+		return position < 0 ? 0 : errors[position];
+	}
+
+	/**
+	 * Returns the kept keys whose count is guaranteed to be at least the given support.
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<K> getGuaranteed(long support) {
+		ArrayList<K> result = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			if (counts[i] - errors[i] >= support) {
+				result.add((K) keys[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns all kept keys.
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<K> getKeys() {
+		ArrayList<K> result = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			result.add((K) keys[i]);
+		}
+		return result;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the estimated memory of the counters, without the keys themselves.
+	 */
+	public long getMemoryBytes() {
+		// A reference and two longs per counter, and about two slots of the position map.
+		return 24L * capacity + 2 * 12L * capacity;
+	}
+
+	/**
+	 * Moves the key at the position up the heap until its parent has a lower count.
+	 */
+	@SuppressWarnings("unchecked")
+	private void siftUp(int position) {
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (counts[parent] <= counts[position]) {
+				return;
+			}
+			swap(position, parent);
+			positions.put((K) keys[position], position);
+			positions.put((K) keys[parent], parent);
+			position = parent;
+		}
+	}
+
+	/**
+	 * Moves the key at the position down the heap until its children have higher counts.
+	 * Counts of kept keys only grow, so they never need to move up.
+	 */
+	@SuppressWarnings("unchecked")
+	private void siftDown(int position) {
+		while (true) {
+			int smallest = position;
+			int left = 2 * position + 1;
+			int right = left + 1;
+			if (left < size && counts[left] < counts[smallest]) {
+				smallest = left;
+			}
+			if (right < size && counts[right] < counts[smallest]) {
+				smallest = right;
+			}
+			if (smallest == position) {
+				return;
+			}
+			swap(position, smallest);
+			positions.put((K) keys[position], position);
+			positions.put((K) keys[smallest], smallest);
+			position = smallest;
+		}
+	}
+
+	private void swap(int i, int j) {
+		Object key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		long count = counts[i];
+		counts[i] = counts[j];
+		counts[j] = count;
+		long error = errors[i];
+		errors[i] = errors[j];
+		errors[j] = error;
+	}
+}
@@ -0,0 +1,122 @@
+package main.collections;
+
+/**
+ * Open addressing set of strings which can be probed with a slice of a char array.
+ * Looking up a slice does not allocate; a String is only created
+ * when a slice which is not in the pool is interned.
+ */
+public class StringPool {
+	private static final int DEFAULT_CAPACITY = 64;
+	private final int initialCapacity;
+	private String[] strings;
+	private int size;
+	private int mask;
+
+	public StringPool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a pool which can hold the expected number of strings without resizing.
+	 */
+	public StringPool(int expectedSize) {
+		initialCapacity = HashUtil.tableSize(expectedSize);
+		allocate(initialCapacity);
+	}
+
+	/**
+	 * Returns the pooled string with the characters of the slice,
+	 * adding a new string to the pool if there is none.
+	 */
+	public String intern(char[] chars, int offset, int length) {
+		int slot = findSlot(chars, offset, length);
+		if (strings[slot] != null) {
+			return strings[slot];
+		}
+		String string = new String(chars, offset, length);
+		insert(slot, string);
+		return string;
+	}
+
+	/**
+	 * Returns the pooled string equal to the given one, adding the given one if there is none.
+	 */
+	public String intern(String string) {
+		int slot = findSlot(string);
+		if (strings[slot] != null) {
+			return strings[slot];
+		}
+		insert(slot, string);
+		return string;
+	}
+
+	/**
+	 * Returns true if the pool contains a string with the characters of the slice.
+	 */
+	public boolean contains(char[] chars, int offset, int length) {
+		return strings[findSlot(chars, offset, length)] != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every string and shrinks the pool back to its initial capacity.
+	 */
+	public void clear() {
+		allocate(initialCapacity);
+		size = 0;
+	}
+
+	private int findSlot(char[] chars, int offset, int length) {
+		// Same hash code as String.hashCode, so both find methods probe the same slots.
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int slot = HashUtil.mix(hash) & mask;
+		while (strings[slot] != null && !equals(strings[slot], chars, offset, length)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int findSlot(String string) {
+		int slot = HashUtil.mix(string.hashCode()) & mask;
+		while (strings[slot] != null && !strings[slot].equals(string)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static boolean equals(String string, char[] chars, int offset, int length) {
+		if (string.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void insert(int slot, String string) {
+		strings[slot] = string;
+		if (++size > HashUtil.maxSize(strings.length)) {
+			String[] oldStrings = strings;
+			allocate(oldStrings.length * 2);
+			for (String old : oldStrings) {
+				if (old != null) {
+					strings[findSlot(old)] = old;
+				}
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		strings = new String[capacity];
+		mask = capacity - 1;
+	}
+}